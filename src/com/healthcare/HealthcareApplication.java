@@ -8,17 +8,18 @@ import java.io.File;
 
 public class HealthcareApplication {
     public static void main(String[] args) {
+        long launched = System.nanoTime();
         SwingUtilities.invokeLater(() -> {
             HealthcareController controller = new HealthcareController();
-            
+            MainView mainView = new MainView(controller);
+            mainView.measureFirstPaint(launched);
+            mainView.setVisible(true);
+
             String dataDirectory = System.getProperty("user.dir") + File.separator + "data";
             File dataDir = new File(dataDirectory);
             if (dataDir.exists()) {
-                controller.loadData(dataDirectory);
+                mainView.loadDataInBackground(dataDirectory);
             }
-            
-            MainView mainView = new MainView(controller);
-            mainView.setVisible(true);
         });
     }
 }
@@ -1,9 +1,21 @@
 package com.healthcare.controller;
 
+import com.healthcare.data.DataChangeListener;
 import com.healthcare.data.DataManager;
+import com.healthcare.data.DataSnapshot;
+import com.healthcare.data.LoadListener;
+import com.healthcare.data.LoadReport;
+import com.healthcare.data.ReloadResult;
 import com.healthcare.model.*;
+import com.healthcare.referral.DocumentBatchReport;
 import com.healthcare.referral.ReferralManager;
+import java.io.File;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 public class HealthcareController {
     private DataManager dataManager;
@@ -15,8 +27,71 @@ public class HealthcareController {
         referralManager.setDataManager(dataManager);
     }
 
-    public void loadData(String dataDirectory) {
-        dataManager.loadAllData(dataDirectory);
+    public LoadReport loadData(String dataDirectory) {
+        useReferralDirectories(dataDirectory);
+        return dataManager.loadAllData(dataDirectory);
+    }
+
+    /**
+     * Load a data directory with progress reporting; listener.entityLoaded is called on applyOn
+     */
+    public LoadReport loadData(String dataDirectory, Executor applyOn, LoadListener listener) {
+        useReferralDirectories(dataDirectory);
+        return dataManager.loadAllData(dataDirectory, applyOn, listener);
+    }
+
+    /**
+     * Keep audit logs in, and read message templates from, subdirectories of the data directory
+     */
+    private void useReferralDirectories(String dataDirectory) {
+        referralManager.setAuditDirectory(new File(dataDirectory, "audit"));
+        referralManager.setTemplateDirectory(new File(dataDirectory, "templates"));
+    }
+
+    /**
+     * Consistent read-only view of all data for reports; close it when done
+     */
+    public DataSnapshot snapshot() {
+        return dataManager.snapshot();
+    }
+
+    public boolean saveData() {
+        return dataManager.saveChanges();
+    }
+
+    public boolean hasUnsavedChanges() {
+        return dataManager.hasUnsavedChanges();
+    }
+
+    /**
+     * Apply changes other programs make to the data directory's CSV files
+     * @param applyOn executor the changes are applied on, e.g. the UI thread
+     */
+    public void watchDataDirectory(Executor applyOn, Consumer<ReloadResult> listener) {
+        dataManager.startWatching(applyOn, listener);
+    }
+
+    public void stopWatchingDataDirectory() {
+        dataManager.stopWatching();
+    }
+
+    /**
+     * Be told about every entity inserted, updated or deleted from now on
+     */
+    public void addChangeListener(DataChangeListener listener) {
+        dataManager.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(DataChangeListener listener) {
+        dataManager.removeChangeListener(listener);
+    }
+
+    /**
+     * IDs of the entities whose ID or name starts with the text, or null while the
+     * search index is still being built
+     */
+    public Set<String> search(Class<?> entityType, String text) {
+        return dataManager.search(entityType, text);
     }
 
     // Patient operations
@@ -28,6 +103,10 @@ public class HealthcareController {
         dataManager.addPatient(patient);
     }
 
+    public boolean updatePatient(String patientID, Patient patient) {
+        return dataManager.updatePatient(patientID, patient);
+    }
+
     public boolean deletePatient(String patientID) {
         return dataManager.deletePatient(patientID);
     }
@@ -45,6 +124,10 @@ public class HealthcareController {
         dataManager.addClinician(clinician);
     }
 
+    public boolean updateClinician(String clinicianID, Clinician clinician) {
+        return dataManager.updateClinician(clinicianID, clinician);
+    }
+
     public boolean deleteClinician(String clinicianID) {
         return dataManager.deleteClinician(clinicianID);
     }
@@ -62,6 +145,10 @@ public class HealthcareController {
         dataManager.addFacility(facility);
     }
 
+    public boolean updateFacility(String facilityID, Facility facility) {
+        return dataManager.updateFacility(facilityID, facility);
+    }
+
     public boolean deleteFacility(String facilityID) {
         return dataManager.deleteFacility(facilityID);
     }
@@ -79,10 +166,18 @@ public class HealthcareController {
         dataManager.addAppointment(appointment);
     }
 
+    public boolean updateAppointment(String appointmentID, Appointment appointment) {
+        return dataManager.updateAppointment(appointmentID, appointment);
+    }
+
     public boolean deleteAppointment(String appointmentID) {
         return dataManager.deleteAppointment(appointmentID);
     }
 
+    public Appointment findAppointment(String appointmentID) {
+        return dataManager.findAppointment(appointmentID);
+    }
+
     // Prescription operations
     public List<Prescription> getAllPrescriptions() {
         return dataManager.getPrescriptions();
@@ -92,28 +187,67 @@ public class HealthcareController {
         dataManager.addPrescription(prescription);
     }
 
+    public boolean updatePrescription(String prescriptionID, Prescription prescription) {
+        return dataManager.updatePrescription(prescriptionID, prescription);
+    }
+
     public boolean deletePrescription(String prescriptionID) {
         return dataManager.deletePrescription(prescriptionID);
     }
 
+    public Prescription findPrescription(String prescriptionID) {
+        return dataManager.findPrescription(prescriptionID);
+    }
+
     // Referral operations
     public List<Referral> getAllReferrals() {
         return dataManager.getReferrals();
     }
 
-    public void addReferral(Referral referral) {
+    /**
+     * Add a referral and queue it for its letters, email and EHR update; a failed stage is logged
+     * @return completes once every stage is done, or exceptionally with the failure
+     */
+    public CompletableFuture<Referral> addReferral(Referral referral) {
         dataManager.addReferral(referral);
-        referralManager.addToQueue(referral);
+        return referralManager.addToQueue(referral).whenComplete((done, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                System.err.println("Error processing referral " + referral.getReferralID() + ": "
+                        + cause.getMessage());
+            }
+        });
+    }
+
+    public boolean updateReferral(String referralID, Referral referral) {
+        if (!dataManager.updateReferral(referralID, referral)) {
+            return false;
+        }
+        // Already queued: swap in the new details without queuing it or writing its letters again
+        referralManager.updateQueued(referralID, referral);
+        return true;
     }
 
     public boolean deleteReferral(String referralID) {
         return dataManager.deleteReferral(referralID);
     }
 
+    public Referral findReferral(String referralID) {
+        return dataManager.findReferral(referralID);
+    }
+
     public void generateReferralFile(Referral referral, String outputPath) {
         referralManager.generateReferralFile(referral, outputPath);
     }
 
+    public CompletableFuture<Referral> generateReferralFileAsync(Referral referral, String outputPath) {
+        return referralManager.generateReferralFileAsync(referral, outputPath);
+    }
+
+    public CompletableFuture<DocumentBatchReport> generateReferralFiles(List<Referral> referrals, String directory) {
+        return referralManager.generateReferralFiles(referrals, new File(directory));
+    }
+
     // Staff operations
     public List<Staff> getAllStaff() {
         return dataManager.getStaff();
@@ -123,10 +257,71 @@ public class HealthcareController {
         dataManager.addStaff(staff);
     }
 
+    public boolean updateStaff(String staffID, Staff staff) {
+        return dataManager.updateStaff(staffID, staff);
+    }
+
     public boolean deleteStaff(String staffID) {
         return dataManager.deleteStaff(staffID);
     }
 
+    public Staff findStaff(String staffID) {
+        return dataManager.findStaff(staffID);
+    }
+
+    // Related-record lookups (served from DataManager foreign-key indexes)
+    public List<Patient> getPatientsForFacility(String facilityID) {
+        return dataManager.getPatientsForFacility(facilityID);
+    }
+
+    public List<Clinician> getCliniciansForFacility(String facilityID) {
+        return dataManager.getCliniciansForFacility(facilityID);
+    }
+
+    public List<Appointment> getAppointmentsForPatient(String patientID) {
+        return dataManager.getAppointmentsForPatient(patientID);
+    }
+
+    public List<Appointment> getAppointmentsForClinician(String clinicianID) {
+        return dataManager.getAppointmentsForClinician(clinicianID);
+    }
+
+    public List<Appointment> getAppointmentsForFacility(String facilityID) {
+        return dataManager.getAppointmentsForFacility(facilityID);
+    }
+
+    public List<Prescription> getPrescriptionsForPatient(String patientID) {
+        return dataManager.getPrescriptionsForPatient(patientID);
+    }
+
+    public List<Prescription> getPrescriptionsForClinician(String clinicianID) {
+        return dataManager.getPrescriptionsForClinician(clinicianID);
+    }
+
+    public List<Prescription> getPrescriptionsForAppointment(String appointmentID) {
+        return dataManager.getPrescriptionsForAppointment(appointmentID);
+    }
+
+    public List<Referral> getReferralsForPatient(String patientID) {
+        return dataManager.getReferralsForPatient(patientID);
+    }
+
+    public List<Referral> getReferralsForClinician(String clinicianID) {
+        return dataManager.getReferralsForClinician(clinicianID);
+    }
+
+    public List<Referral> getReferralsForFacility(String facilityID) {
+        return dataManager.getReferralsForFacility(facilityID);
+    }
+
+    public List<Referral> getReferralsForAppointment(String appointmentID) {
+        return dataManager.getReferralsForAppointment(appointmentID);
+    }
+
+    public List<Staff> getStaffForFacility(String facilityID) {
+        return dataManager.getStaffForFacility(facilityID);
+    }
+
     // Get data manager for direct access if needed
     public DataManager getDataManager() {
         return dataManager;
@@ -0,0 +1,22 @@
+package com.healthcare.data;
+
+/**
+ * CsvRow view over an array of already-decoded values
+ */
+class ArrayRow implements CsvRow {
+    private final String[] fields;
+
+    ArrayRow(String[] fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public int fieldCount() {
+        return fields.length;
+    }
+
+    @Override
+    public String field(int index) {
+        return fields[index];
+    }
+}
@@ -0,0 +1,109 @@
+package com.healthcare.data;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only list of the entities in an EntityStore's chunks in slot order, skipping
+ * deleted slots. The chunks must not change while the list is in use; the store copies a
+ * chunk before changing one it has handed out.
+ */
+class ChunkList<T> extends AbstractList<T> {
+    private final Object[][] chunks;
+    private final int[] chunkLive;
+    private final int[] firstIndex; // list index of each chunk's first entity
+    private final int end;
+    private final int live;
+
+    ChunkList(Object[][] chunks, int[] chunkLive, int end, int live) {
+        this.chunks = chunks;
+        this.chunkLive = chunkLive;
+        this.end = end;
+        this.live = live;
+        this.firstIndex = new int[chunkLive.length + 1];
+        for (int chunk = 0; chunk < chunkLive.length; chunk++) {
+            firstIndex[chunk + 1] = firstIndex[chunk] + chunkLive[chunk];
+        }
+    }
+
+    /**
+     * The chunks to read, checked on every access so a subclass can refuse once closed
+     */
+    Object[][] chunks() {
+        return chunks;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= live) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + live);
+        }
+        Object[][] shared = chunks();
+        // The chunk holding the entity: the last one starting at or before it that is not empty
+        int low = 0;
+        int high = chunkLive.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstIndex[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        while (chunkLive[low] == 0) {
+            low--;
+        }
+        Object[] chunk = shared[low];
+        int wanted = index - firstIndex[low];
+        if (chunkLive[low] == Math.min(EntityStore.CHUNK_SIZE, end - (low << EntityStore.CHUNK_SHIFT))) {
+            return cast(chunk[wanted]); // no deleted slots
+        }
+        for (Object entity : chunk) {
+            if (entity != null && wanted-- == 0) {
+                return cast(entity);
+            }
+        }
+        throw new IllegalStateException("Shared chunk changed");
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int slot = nextSlot(0);
+
+            private int nextSlot(int from) {
+                Object[][] shared = chunks();
+                while (from < end && EntityStore.at(shared, from) == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < end;
+            }
+
+            @Override
+            public T next() {
+                if (slot >= end) {
+                    throw new NoSuchElementException();
+                }
+                T entity = EntityStore.at(chunks(), slot);
+                slot = nextSlot(slot + 1);
+                return entity;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object entity) {
+        return (T) entity;
+    }
+}
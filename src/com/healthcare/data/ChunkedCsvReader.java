@@ -0,0 +1,108 @@
+package com.healthcare.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses one large CSV file in parallel.
+ * The file is split into byte ranges that end on a record boundary (a newline
+ * outside any quoted field), each range is memory-mapped and parsed on a
+ * ForkJoinPool, and the results are merged back in file order.
+ */
+class ChunkedCsvReader {
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private ChunkedCsvReader() {
+    }
+
+    /**
+     * Read every record after the header and map it with the given mapper.
+     * Rows mapped to null are dropped.
+     */
+    static <T> List<T> read(String filePath, long chunkSize, RowMapper<T> mapper, ReadProgress progress)
+            throws IOException {
+        Path path = Paths.get(filePath);
+        List<long[]> chunks = split(path, chunkSize);
+
+        List<Callable<List<T>>> tasks = new ArrayList<>();
+        for (long[] chunk : chunks) {
+            tasks.add(() -> MappedCsvReader.readRange(path, chunk[0], chunk[1], mapper, progress));
+        }
+
+        List<T> rows = new ArrayList<>();
+        try {
+            for (Future<List<T>> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                rows.addAll(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing " + filePath, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error parsing " + filePath, e.getCause());
+        }
+        return rows;
+    }
+
+    /**
+     * Split the file after its header into [start, end) byte ranges of roughly chunkSize bytes.
+     * A single sequential pass tracks quote state so that no range ends inside a quoted field.
+     * Ranges end after a '\n', a '\r' not followed by '\n', or a "\r\n", as records do
+     * in Utf8CsvTokenizer.
+     */
+    static List<long[]> split(Path path, long chunkSize) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            boolean inQuotes = false;
+            boolean afterCr = false; // the last byte was a '\r' ending a record
+            long chunkStart = MappedCsvReader.headerEnd(channel, size);
+            long position = chunkStart;
+
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (afterCr && b != '\n' && position + i - chunkStart >= chunkSize) {
+                        chunks.add(new long[]{chunkStart, position + i});
+                        chunkStart = position + i;
+                    }
+                    afterCr = false;
+                    if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (b == '\r' && !inQuotes) {
+                        afterCr = true;
+                    } else if (b == '\n' && !inQuotes) {
+                        long recordEnd = position + i + 1;
+                        if (recordEnd - chunkStart >= chunkSize) {
+                            chunks.add(new long[]{chunkStart, recordEnd});
+                            chunkStart = recordEnd;
+                        }
+                    }
+                }
+                position += read;
+            }
+            if (chunkStart < size) {
+                chunks.add(new long[]{chunkStart, size});
+            }
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,66 @@
+package com.healthcare.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares one String instance between the equal values of a low-cardinality column, so a
+ * million appointments that say "Scheduled" hold one string instead of a million copies.
+ * Safe to use from several parsing threads. Once it holds MAX_VALUES it stops taking new
+ * values, so a column that turns out to be mostly unique costs no more than a bounded map.
+ */
+class ColumnDictionary {
+    static final int MAX_VALUES = 4096;
+
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * The shared instance equal to the value, or the value itself if it is new
+     */
+    String share(String value) {
+        if (value == null) {
+            return null;
+        }
+        String shared = values.get(value);
+        if (shared == null) {
+            if (values.size() >= MAX_VALUES) {
+                return value;
+            }
+            shared = values.putIfAbsent(value, value);
+            if (shared == null) {
+                return value;
+            }
+        }
+        if (shared != value) {
+            savedBytes.add(sizeOf(value));
+        }
+        return shared;
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Estimated heap of the duplicate strings dropped so far
+     */
+    long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    /**
+     * Rough heap size of a string: 24-byte String plus a 16-byte array header and one
+     * byte per character (two if it is not Latin-1), rounded up to 8
+     */
+    static long sizeOf(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                length = value.length() * 2;
+                break;
+            }
+        }
+        return 24 + ((16 + length + 7) & ~7);
+    }
+}
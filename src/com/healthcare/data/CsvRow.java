@@ -0,0 +1,14 @@
+package com.healthcare.data;
+
+/**
+ * One parsed CSV record.
+ * Field values are only materialised as Strings when requested.
+ */
+interface CsvRow {
+    int fieldCount();
+
+    /**
+     * Value of a field with surrounding quotes removed, "" unescaped and whitespace trimmed
+     */
+    String field(int index);
+}
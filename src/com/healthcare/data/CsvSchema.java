@@ -0,0 +1,143 @@
+package com.healthcare.data;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Describes how one entity type is stored on disk: its CSV file, column layout,
+ * primary key, and how to convert between a row of fields and the model object.
+ * Field arrays are always in CSV column order.
+ */
+class CsvSchema<T> {
+    private final Class<T> type;
+    private final String name;
+    private final String fileName;
+    private final String[] columns;
+    private final Function<T, String> keyOf;
+    private final RowMapper<T> mapper;
+    private final Function<T, String[]> writer;
+    private boolean[] shared = new boolean[0]; // by column index, true for columns whose values are shared
+
+    CsvSchema(String name, String fileName, String[] columns, Class<T> type, Function<T, String> keyOf,
+              RowMapper<T> mapper, Function<T, String[]> writer) {
+        this.type = type;
+        this.name = name;
+        this.fileName = fileName;
+        this.columns = columns;
+        this.keyOf = keyOf;
+        this.mapper = mapper;
+        this.writer = writer;
+    }
+
+    /**
+     * Share equal values of these low-cardinality columns between the entities one load
+     * builds (see SharedValues)
+     * @throws IllegalArgumentException if a column is not in the schema
+     */
+    CsvSchema<T> sharingValuesOf(String... sharedColumns) {
+        boolean[] byColumn = new boolean[columns.length];
+        for (String column : sharedColumns) {
+            int index = Arrays.asList(columns).indexOf(column);
+            if (index < 0) {
+                throw new IllegalArgumentException("No column " + column + " in " + fileName);
+            }
+            byColumn[index] = true;
+        }
+        shared = byColumn;
+        return this;
+    }
+
+    /**
+     * Fresh dictionaries for the shared columns, by column index, null for the others
+     */
+    ColumnDictionary[] newDictionaries() {
+        ColumnDictionary[] dictionaries = new ColumnDictionary[shared.length];
+        for (int i = 0; i < shared.length; i++) {
+            dictionaries[i] = shared[i] ? new ColumnDictionary() : null;
+        }
+        return dictionaries;
+    }
+
+    /**
+     * Model class of the entities
+     */
+    Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Entity name used in messages, e.g. "patients"
+     */
+    String getName() {
+        return name;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    String[] getColumns() {
+        return columns.clone();
+    }
+
+    int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Primary key (first column) of an entity
+     */
+    String keyOf(T entity) {
+        return keyOf.apply(entity);
+    }
+
+    /**
+     * Build an entity from a row, or return null if the row has too few fields
+     */
+    T fromRow(CsvRow row) {
+        return fromRow(row, null);
+    }
+
+    /**
+     * fromRow taking the shared columns' values from dictionaries (see newDictionaries),
+     * or from the row itself if dictionaries is null
+     */
+    T fromRow(CsvRow row, ColumnDictionary[] dictionaries) {
+        if (row.fieldCount() < columns.length) {
+            return null;
+        }
+        return mapper.map(dictionaries == null ? row : new SharedValuesRow(row, dictionaries));
+    }
+
+    /**
+     * Field values of an entity in CSV column order
+     */
+    String[] toRow(T entity) {
+        return writer.apply(entity);
+    }
+
+    /**
+     * Row whose shared columns come out of their dictionaries
+     */
+    private static class SharedValuesRow implements CsvRow {
+        private final CsvRow row;
+        private final ColumnDictionary[] dictionaries;
+
+        SharedValuesRow(CsvRow row, ColumnDictionary[] dictionaries) {
+            this.row = row;
+            this.dictionaries = dictionaries;
+        }
+
+        @Override
+        public int fieldCount() {
+            return row.fieldCount();
+        }
+
+        @Override
+        public String field(int index) {
+            String value = row.field(index);
+            return index < dictionaries.length && dictionaries[index] != null
+                    ? dictionaries[index].share(value) : value;
+        }
+    }
+}
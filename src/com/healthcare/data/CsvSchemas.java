@@ -0,0 +1,279 @@
+package com.healthcare.data;
+
+import com.healthcare.model.*;
+import java.util.List;
+
+/**
+ * CSV schemas for the seven healthcare entity files.
+ * Each names its low-cardinality columns (statuses, types, dates, the IDs of clinicians
+ * and facilities), whose values a load shares so its entities do not each hold their own
+ * copy; free-text columns are left alone.
+ */
+final class CsvSchemas {
+
+    static final CsvSchema<Patient> PATIENTS = new CsvSchema<>("patients", "patients.csv", new String[]{
+            "patient_id", "first_name", "last_name", "date_of_birth", "nhs_number", "gender", "phone_number",
+            "email", "address", "postcode", "emergency_contact_name", "emergency_contact_phone",
+            "registration_date", "gp_surgery_id"
+    }, Patient.class, Patient::getPatientID, CsvSchemas::toPatient, CsvSchemas::fromPatient)
+            .sharingValuesOf("gender", "registration_date", "gp_surgery_id");
+
+    static final CsvSchema<Clinician> CLINICIANS = new CsvSchema<>("clinicians", "clinicians.csv", new String[]{
+            "clinician_id", "first_name", "last_name", "title", "speciality", "gmc_number", "phone_number",
+            "email", "workplace_id", "workplace_type", "employment_status", "start_date"
+    }, Clinician.class, Clinician::getClinicianID, CsvSchemas::toClinician, CsvSchemas::fromClinician)
+            .sharingValuesOf("title", "speciality", "workplace_id", "workplace_type", "employment_status", "start_date");
+
+    static final CsvSchema<Facility> FACILITIES = new CsvSchema<>("facilities", "facilities.csv", new String[]{
+            "facility_id", "facility_name", "facility_type", "address", "postcode", "phone_number", "email",
+            "opening_hours", "manager_name", "capacity", "specialities_offered"
+    }, Facility.class, Facility::getFacilityID, CsvSchemas::toFacility, CsvSchemas::fromFacility)
+            .sharingValuesOf("facility_type", "opening_hours", "capacity");
+
+    static final CsvSchema<Appointment> APPOINTMENTS = new CsvSchema<>("appointments", "appointments.csv", new String[]{
+            "appointment_id", "patient_id", "clinician_id", "facility_id", "appointment_date",
+            "appointment_time", "duration_minutes", "appointment_type", "status", "reason_for_visit",
+            "notes", "created_date", "last_modified"
+    }, Appointment.class, Appointment::getAppointmentID, CsvSchemas::toAppointment, CsvSchemas::fromAppointment)
+            .sharingValuesOf("clinician_id", "facility_id", "appointment_date", "appointment_time", "duration_minutes",
+            "appointment_type", "status", "created_date", "last_modified");
+
+    static final CsvSchema<Prescription> PRESCRIPTIONS = new CsvSchema<>("prescriptions", "prescriptions.csv", new String[]{
+            "prescription_id", "patient_id", "clinician_id", "appointment_id", "prescription_date",
+            "medication_name", "dosage", "frequency", "duration_days", "quantity", "instructions",
+            "pharmacy_name", "status", "issue_date", "collection_date"
+    }, Prescription.class, Prescription::getPrescriptionID, CsvSchemas::toPrescription, CsvSchemas::fromPrescription)
+            .sharingValuesOf("clinician_id", "prescription_date", "medication_name", "dosage", "frequency",
+            "duration_days", "quantity", "pharmacy_name", "status", "issue_date", "collection_date");
+
+    static final CsvSchema<Referral> REFERRALS = new CsvSchema<>("referrals", "referrals.csv", new String[]{
+            "referral_id", "patient_id", "referring_clinician_id", "referred_to_clinician_id",
+            "referring_facility_id", "referred_to_facility_id", "referral_date", "urgency_level",
+            "referral_reason", "clinical_summary", "requested_investigations", "status", "appointment_id",
+            "notes", "created_date", "last_updated"
+    }, Referral.class, Referral::getReferralID, CsvSchemas::toReferral, CsvSchemas::fromReferral)
+            .sharingValuesOf("referring_clinician_id", "referred_to_clinician_id", "referring_facility_id",
+            "referred_to_facility_id", "referral_date", "urgency_level", "status", "created_date", "last_updated");
+
+    static final CsvSchema<Staff> STAFF = new CsvSchema<>("staff", "staff.csv", new String[]{
+            "staff_id", "first_name", "last_name", "role", "department", "facility_id", "phone_number",
+            "email", "employment_status", "start_date", "line_manager", "access_level"
+    }, Staff.class, Staff::getStaffID, CsvSchemas::toStaff, CsvSchemas::fromStaff)
+            .sharingValuesOf("role", "department", "facility_id", "employment_status", "start_date", "line_manager",
+            "access_level");
+
+    // In dependency order: referenced entities before the records that reference them
+    static final List<CsvSchema<?>> ALL = List.of(
+            PATIENTS, CLINICIANS, FACILITIES, APPOINTMENTS, PRESCRIPTIONS, REFERRALS, STAFF);
+
+    private CsvSchemas() {
+    }
+
+    // Row mappers
+    private static Patient toPatient(CsvRow row) {
+        // Expected CSV (patients.csv):
+        // patient_id,first_name,last_name,date_of_birth,nhs_number,gender,phone_number,email,address,postcode,emergency_contact_name,emergency_contact_phone,registration_date,gp_surgery_id
+        return new Patient(
+                row.field(0),  // patient_id
+                row.field(1),  // first_name
+                row.field(2),  // last_name
+                row.field(3),  // date_of_birth
+                row.field(5),  // gender
+                row.field(4),  // nhs_number
+                row.field(7),  // email
+                row.field(6),  // phone_number
+                row.field(8),  // address
+                row.field(9),  // postcode
+                row.field(10), // emergency_contact_name
+                row.field(11), // emergency_contact_phone
+                row.field(12), // registration_date
+                row.field(13)  // gp_surgery_id
+        );
+    }
+
+    private static Clinician toClinician(CsvRow row) {
+        // Expected CSV (clinicians.csv):
+        // clinician_id,first_name,last_name,title,speciality,gmc_number,phone_number,email,workplace_id,workplace_type,employment_status,start_date
+        return new Clinician(
+                row.field(0),  // clinician_id
+                row.field(1),  // first_name
+                row.field(2),  // last_name
+                row.field(3),  // title -> qualification
+                row.field(4),  // speciality -> specialty
+                row.field(5),  // gmc_number
+                row.field(8),  // workplace_id -> workplace
+                row.field(9),  // workplace_type
+                row.field(10), // employment_status
+                row.field(11), // start_date
+                row.field(7),  // email
+                row.field(6)   // phone_number
+        );
+    }
+
+    private static Facility toFacility(CsvRow row) {
+        // Expected CSV (facilities.csv):
+        // facility_id,facility_name,facility_type,address,postcode,phone_number,email,opening_hours,manager_name,capacity,specialities_offered
+        return new Facility(
+                row.field(0),  // facility_id
+                row.field(1),  // facility_name
+                row.field(2),  // facility_type
+                row.field(3),  // address
+                row.field(4),  // postcode
+                row.field(5),  // phone_number
+                row.field(6),  // email
+                row.field(7),  // opening_hours
+                row.field(8),  // manager_name
+                row.field(10), // specialities_offered -> services
+                row.field(9)   // capacity
+        );
+    }
+
+    private static Appointment toAppointment(CsvRow row) {
+        // Expected CSV (appointments.csv):
+        // appointment_id,patient_id,clinician_id,facility_id,appointment_date,appointment_time,
+        // duration_minutes,appointment_type,status,reason_for_visit,notes,created_date,last_modified
+        return new Appointment(
+                row.field(0),  // appointment_id
+                row.field(1),  // patient_id
+                row.field(2),  // clinician_id
+                row.field(3),  // facility_id
+                row.field(4),  // appointment_date
+                row.field(5),  // appointment_time
+                row.field(6),  // duration_minutes
+                row.field(7),  // appointment_type
+                row.field(8),  // status
+                row.field(9),  // reason_for_visit
+                row.field(10), // notes
+                row.field(11), // created_date
+                row.field(12)  // last_modified
+        );
+    }
+
+    private static Prescription toPrescription(CsvRow row) {
+        // Expected CSV (prescriptions.csv):
+        // prescription_id,patient_id,clinician_id,appointment_id,prescription_date,medication_name,
+        // dosage,frequency,duration_days,quantity,instructions,pharmacy_name,status,issue_date,collection_date
+        return new Prescription(
+                row.field(0),   // prescription_id
+                row.field(1),   // patient_id
+                row.field(2),   // clinician_id
+                row.field(3),   // appointment_id
+                row.field(5),   // medication_name
+                row.field(6),   // dosage
+                row.field(7),   // frequency
+                row.field(8),   // duration_days
+                row.field(9),   // quantity
+                row.field(11),  // pharmacy_name
+                row.field(4),   // prescription_date
+                row.field(13),  // issue_date
+                row.field(14),  // collection_date
+                row.field(12),  // status -> collectionStatus
+                row.field(10)   // instructions -> notes
+        );
+    }
+
+    private static Referral toReferral(CsvRow row) {
+        // Expected CSV (referrals.csv):
+        // referral_id,patient_id,referring_clinician_id,referred_to_clinician_id,
+        // referring_facility_id,referred_to_facility_id,referral_date,urgency_level,
+        // referral_reason,clinical_summary,requested_investigations,status,appointment_id,notes,created_date,last_updated
+        return new Referral(
+                row.field(0),   // referral_id
+                row.field(1),   // patient_id
+                row.field(2),   // referring_clinician_id
+                row.field(3),   // referred_to_clinician_id
+                row.field(4),   // referring_facility_id
+                row.field(5),   // referred_to_facility_id
+                row.field(6),   // referral_date
+                row.field(7),   // urgency_level
+                row.field(8),   // referral_reason
+                row.field(9),   // clinical_summary
+                row.field(10),  // requested_investigations
+                row.field(12),  // appointment_id
+                row.field(13),  // notes
+                row.field(11),  // status
+                row.field(14),  // created_date
+                row.field(15)   // last_updated
+        );
+    }
+
+    private static Staff toStaff(CsvRow row) {
+        // Expected CSV (staff.csv):
+        // staff_id,first_name,last_name,role,department,facility_id,phone_number,email,employment_status,start_date,line_manager,access_level
+        return new Staff(
+                row.field(0),  // staff_id
+                row.field(1),  // first_name
+                row.field(2),  // last_name
+                row.field(3),  // role
+                row.field(4),  // department
+                row.field(5),  // facility_id
+                row.field(7),  // email
+                row.field(6),  // phone_number
+                row.field(8),  // employment_status
+                row.field(9),  // start_date
+                row.field(10), // line_manager
+                row.field(11)  // access_level
+        );
+    }
+
+    // Row writers (CSV column order)
+
+    private static String[] fromPatient(Patient p) {
+        return new String[]{
+                p.getPatientID(), p.getFirstName(), p.getLastName(), p.getDateOfBirth(), p.getNhsNumber(),
+                p.getGender(), p.getPhone(), p.getEmail(), p.getAddress(), p.getPostcode(),
+                p.getEmergencyContactName(), p.getEmergencyContactPhone(), p.getRegistrationDate(),
+                p.getGpSurgery()
+        };
+    }
+
+    private static String[] fromClinician(Clinician c) {
+        return new String[]{
+                c.getClinicianID(), c.getFirstName(), c.getLastName(), c.getQualification(),
+                c.getSpecialty(), c.getGmcNumber(), c.getPhone(), c.getEmail(), c.getWorkplace(),
+                c.getWorkplaceType(), c.getEmploymentStatus(), c.getStartDate()
+        };
+    }
+
+    private static String[] fromFacility(Facility f) {
+        return new String[]{
+                f.getFacilityID(), f.getName(), f.getType(), f.getAddress(), f.getPostcode(), f.getPhone(),
+                f.getEmail(), f.getOpeningHours(), f.getManagerName(), f.getCapacity(), f.getServices()
+        };
+    }
+
+    private static String[] fromAppointment(Appointment a) {
+        return new String[]{
+                a.getAppointmentID(), a.getPatientID(), a.getClinicianID(), a.getFacilityID(), a.getDate(),
+                a.getTime(), a.getDurationMinutes(), a.getAppointmentType(), a.getStatus(), a.getReason(),
+                a.getNotes(), a.getCreatedDate(), a.getLastModified()
+        };
+    }
+
+    private static String[] fromPrescription(Prescription p) {
+        return new String[]{
+                p.getPrescriptionID(), p.getPatientID(), p.getClinicianID(), p.getAppointmentID(),
+                p.getDatePrescribed(), p.getMedication(), p.getDosage(), p.getFrequency(),
+                p.getDurationDays(), p.getQuantity(), p.getNotes(), p.getPharmacy(), p.getCollectionStatus(),
+                p.getIssueDate(), p.getCollectionDate()
+        };
+    }
+
+    private static String[] fromReferral(Referral r) {
+        return new String[]{
+                r.getReferralID(), r.getPatientID(), r.getReferringClinicianID(),
+                r.getReceivingClinicianID(), r.getReferringFacility(), r.getReceivingFacility(), r.getDate(),
+                r.getUrgency(), r.getReferralReason(), r.getClinicalSummary(),
+                r.getRequestedInvestigations(), r.getStatus(), r.getAppointmentID(), r.getNotes(),
+                r.getCreatedDate(), r.getLastUpdated()
+        };
+    }
+
+    private static String[] fromStaff(Staff s) {
+        return new String[]{
+                s.getStaffID(), s.getFirstName(), s.getLastName(), s.getRole(), s.getDepartment(),
+                s.getFacilityID(), s.getPhone(), s.getEmail(), s.getEmploymentStatus(), s.getStartDate(),
+                s.getLineManager(), s.getAccessLevel()
+        };
+    }
+}
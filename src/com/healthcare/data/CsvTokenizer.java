@@ -0,0 +1,210 @@
+package com.healthcare.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reusable CSV tokenizer working directly on a char buffer.
+ * Each call to next() finds the following record and records the offsets of its
+ * fields; no Strings are created until a field is requested through field(int).
+ *
+ * Quoted fields may contain commas and line breaks, and "" inside a quoted
+ * field is read as a single quote character. Blank lines are skipped.
+ */
+class CsvTokenizer implements CsvRow {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader; // null when tokenizing a fixed buffer
+    private char[] buffer;
+    private int limit;          // end of valid data in buffer
+    private int recordStart;    // offset of the current record in buffer
+    private int recordLength;   // chars consumed by the current record, including the line break
+
+    // Field offsets relative to recordStart
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int count;
+
+    private final StringBuilder scratch = new StringBuilder();
+
+    /**
+     * Tokenize everything read from the given reader
+     */
+    CsvTokenizer(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Tokenize the first length chars of an existing buffer
+     */
+    CsvTokenizer(char[] data, int length) {
+        this.reader = null;
+        this.buffer = data;
+        this.limit = length;
+    }
+
+    /**
+     * Advance to the next non-blank record
+     * @return false at end of input
+     */
+    boolean next() throws IOException {
+        do {
+            recordStart += recordLength;
+            recordLength = 0;
+            if (!scanRecord()) {
+                return false;
+            }
+        } while (isBlank());
+        return true;
+    }
+
+    private boolean scanRecord() throws IOException {
+        count = 0;
+        int offset = 0;
+        int fieldStart = 0;
+        boolean inQuotes = false;
+        boolean fieldQuoted = false;
+
+        while (true) {
+            if (!ensure(offset)) {
+                if (offset == 0) {
+                    return false;
+                }
+                addField(fieldStart, offset, fieldQuoted);
+                recordLength = offset;
+                return true;
+            }
+            char c = buffer[recordStart + offset];
+            if (c == '"') {
+                fieldQuoted = true;
+                if (inQuotes && ensure(offset + 1) && buffer[recordStart + offset + 1] == '"') {
+                    offset += 2; // escaped quote
+                } else {
+                    inQuotes = !inQuotes;
+                    offset++;
+                }
+            } else if (inQuotes) {
+                offset++;
+            } else if (c == ',') {
+                addField(fieldStart, offset, fieldQuoted);
+                fieldQuoted = false;
+                offset++;
+                fieldStart = offset;
+            } else if (c == '\n' || c == '\r') {
+                addField(fieldStart, offset, fieldQuoted);
+                recordLength = offset + 1;
+                if (c == '\r' && ensure(offset + 1) && buffer[recordStart + offset + 1] == '\n') {
+                    recordLength++;
+                }
+                return true;
+            } else {
+                offset++;
+            }
+        }
+    }
+
+    /**
+     * Make sure the char at recordStart + offset is in the buffer, reading more input if needed
+     */
+    private boolean ensure(int offset) throws IOException {
+        while (recordStart + offset >= limit) {
+            if (reader == null) {
+                return false;
+            }
+            if (recordStart > 0) {
+                // Move the partial record to the front of the buffer
+                System.arraycopy(buffer, recordStart, buffer, 0, limit - recordStart);
+                limit -= recordStart;
+                recordStart = 0;
+            }
+            if (limit == buffer.length) {
+                char[] larger = new char[buffer.length * 2];
+                System.arraycopy(buffer, 0, larger, 0, limit);
+                buffer = larger;
+            }
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    private void addField(int start, int end, boolean isQuoted) {
+        if (count == starts.length) {
+            int size = count * 2;
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            quoted = Arrays.copyOf(quoted, size);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        quoted[count] = isQuoted;
+        count++;
+    }
+
+    private boolean isBlank() {
+        if (count != 1 || quoted[0]) {
+            return false;
+        }
+        for (int i = recordStart + starts[0]; i < recordStart + ends[0]; i++) {
+            if (buffer[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int fieldCount() {
+        return count;
+    }
+
+    @Override
+    public String field(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + count);
+        }
+        int start = recordStart + starts[index];
+        int end = recordStart + ends[index];
+        if (!quoted[index]) {
+            while (start < end && buffer[start] <= ' ') {
+                start++;
+            }
+            while (end > start && buffer[end - 1] <= ' ') {
+                end--;
+            }
+            return start == end ? "" : new String(buffer, start, end - start);
+        }
+
+        // Strip the quotes and unescape "" before trimming
+        scratch.setLength(0);
+        boolean inQuotes = false;
+        for (int i = start; i < end; i++) {
+            char c = buffer[i];
+            if (c == '"') {
+                if (inQuotes && i + 1 < end && buffer[i + 1] == '"') {
+                    scratch.append('"');
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else {
+                scratch.append(c);
+            }
+        }
+        int from = 0;
+        int to = scratch.length();
+        while (from < to && scratch.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && scratch.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return from == to ? "" : scratch.substring(from, to);
+    }
+}
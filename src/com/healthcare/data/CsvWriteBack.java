@@ -0,0 +1,419 @@
+package com.healthcare.data;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes changes back to the CSV files of a data directory.
+ *
+ * A save appends the current row of every changed entity to the end of its CSV
+ * file and records deleted IDs in a "<file>.deleted" sidecar, so saving costs
+ * time in proportion to the number of changes, not the size of the file. When
+ * loading, a later row replaces an earlier one with the same ID and IDs in the
+ * sidecar are dropped.
+ *
+ * Once enough changes have piled up in a file it is compacted in the
+ * background: the latest saved row of each ID still there is written to a temp
+ * file, anything appended meanwhile is copied across, and the temp file
+ * atomically replaces the original.
+ */
+class CsvWriteBack implements Closeable {
+    static final String DELETED_SUFFIX = ".deleted";
+
+    // Appended rows plus deleted IDs in one file that trigger a compaction
+    private static final long COMPACTION_THRESHOLD = 10_000;
+
+    /**
+     * Write-back state of one CSV file
+     */
+    private static class FileState {
+        final ReentrantLock lock = new ReentrantLock(); // guards the CSV file and its sidecar
+        final Map<String, Long> deleted = new LinkedHashMap<>(); // deleted ID -> sequence number
+        long sequence;
+        long changesSinceCompaction;
+        boolean compacting;
+        String written; // fingerprint of the CSV file and sidecar after our last write
+    }
+
+    private final File directory;
+    private final Map<String, FileState> files = new HashMap<>();
+    private final ExecutorService compactor;
+
+    CsvWriteBack(File directory) {
+        this.directory = directory;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "csv-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * IDs listed in the deleted-rows sidecar of a CSV file, empty if there is none
+     */
+    static Set<String> readDeletedIds(String csvPath) throws IOException {
+        Path sidecar = Path.of(csvPath + DELETED_SUFFIX);
+        Set<String> ids = new HashSet<>();
+        if (Files.isRegularFile(sidecar)) {
+            for (String line : Files.readAllLines(sidecar, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    ids.add(line);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Write the current state of the given entities to the store's CSV file
+     */
+    <T> void save(EntityStore<T> store, Collection<String> changedIds) throws IOException {
+        if (changedIds.isEmpty()) {
+            return;
+        }
+        CsvSchema<T> schema = store.getSchema();
+        FileState state = stateFor(schema);
+        boolean compact;
+
+        state.lock.lock();
+        try {
+            StringBuilder rows = new StringBuilder();
+            boolean deletedChanged = false;
+            for (String id : changedIds) {
+                T entity = store.find(id);
+                if (entity != null) {
+                    appendRow(rows, schema.toRow(entity));
+                    deletedChanged |= state.deleted.remove(id) != null;
+                } else {
+                    state.deleted.put(id, ++state.sequence);
+                    deletedChanged = true;
+                }
+            }
+            appendToCsv(schema, rows);
+            if (deletedChanged) {
+                writeDeletedIds(schema, state);
+            }
+            state.written = fingerprint(schema.getFileName());
+            state.changesSinceCompaction += changedIds.size();
+            compact = state.changesSinceCompaction >= COMPACTION_THRESHOLD && !state.compacting;
+        } finally {
+            state.lock.unlock();
+        }
+        if (compact) {
+            compactInBackground(schema);
+        }
+    }
+
+    /**
+     * Rewrite a CSV file on the background thread from what has been saved to it: the
+     * latest row of each ID, less the IDs in the deleted-rows sidecar. Changes not saved
+     * yet stay out of the file, as they would without compacting.
+     */
+    void compactInBackground(CsvSchema<?> schema) throws IOException {
+        FileState state = stateFor(schema);
+        Path csv = csvPath(schema);
+        Set<String> deletedIds;
+        long capturedLength;
+        long capturedSequence;
+
+        state.lock.lock();
+        try {
+            if (state.compacting || !Files.exists(csv)) {
+                return;
+            }
+            capturedLength = Files.size(csv);
+            capturedSequence = state.sequence;
+            deletedIds = new HashSet<>(state.deleted.keySet());
+            state.compacting = true;
+        } finally {
+            state.lock.unlock();
+        }
+
+        compactor.execute(() -> {
+            Path temp = csv.resolveSibling(csv.getFileName() + ".tmp");
+            try {
+                writeLatestRows(schema, csv, capturedLength, deletedIds, temp);
+
+                state.lock.lock();
+                try {
+                    copyTail(csv, capturedLength, temp);
+                    replace(temp, csv);
+                    state.deleted.values().removeIf(sequence -> sequence <= capturedSequence);
+                    writeDeletedIds(schema, state);
+                    state.written = fingerprint(schema.getFileName());
+                    state.changesSinceCompaction = 0;
+                } finally {
+                    state.compacting = false;
+                    state.lock.unlock();
+                }
+            } catch (IOException e) {
+                System.err.println("Error compacting " + schema.getFileName() + ": " + e.getMessage());
+                state.lock.lock();
+                state.compacting = false;
+                state.lock.unlock();
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // best effort clean-up
+                }
+            }
+        });
+    }
+
+    /**
+     * Write a header and then the latest row of every ID in the first length bytes of the
+     * CSV file that is not deleted, copied as they are, in the order the IDs first appear.
+     * That is the order and content loading the file gives.
+     */
+    private static void writeLatestRows(CsvSchema<?> schema, Path csv, long length, Set<String> deletedIds,
+                                        Path target) throws IOException {
+        List<MappedByteBuffer> windows = new ArrayList<>();
+        Map<String, int[]> latest = new LinkedHashMap<>(); // ID -> window, start and end of its latest row
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            long start = MappedCsvReader.headerEnd(channel, length);
+            while (start < length) {
+                long end = Math.min(length, start + MappedCsvReader.MAX_MAPPING_SIZE);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                Utf8CsvTokenizer record = new Utf8CsvTokenizer(window);
+                while (record.next()) {
+                    if (end < length && record.completePosition() < record.position()) {
+                        break; // continues in the next window
+                    }
+                    if (record.fieldCount() >= schema.getColumnCount() && !deletedIds.contains(record.field(0))) {
+                        latest.put(record.field(0), new int[]{windows.size(), record.recordStart(), record.position()});
+                    }
+                }
+                long consumed = end < length ? record.completePosition() : end - start;
+                if (consumed == 0) {
+                    throw new IOException("Row at byte " + start + " is too long to compact");
+                }
+                windows.add(window);
+                start += consumed;
+            }
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), 64 * 1024)) {
+            StringBuilder header = new StringBuilder();
+            appendRow(header, schema.getColumns());
+            out.write(header.toString().getBytes(StandardCharsets.UTF_8));
+            byte[] row = new byte[256];
+            for (int[] range : latest.values()) {
+                int size = range[2] - range[1];
+                if (row.length < size) {
+                    row = new byte[Math.max(size, row.length * 2)];
+                }
+                windows.get(range[0]).get(range[1], row, 0, size);
+                out.write(row, 0, size);
+                if (row[size - 1] != '\n' && row[size - 1] != '\r') {
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * True if a CSV file and its sidecar are as this write-back last left them, so a change
+     * the directory watcher saw was our own save or compaction
+     */
+    boolean isOwnWrite(String fileName) {
+        FileState state;
+        synchronized (files) {
+            state = files.get(fileName);
+        }
+        if (state == null) {
+            return false;
+        }
+        state.lock.lock();
+        try {
+            return state.written != null && state.written.equals(fingerprint(fileName));
+        } catch (IOException e) {
+            return false;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Size and modification time of a CSV file and its sidecar
+     */
+    private String fingerprint(String fileName) throws IOException {
+        Path csv = new File(directory, fileName).toPath();
+        Path sidecar = Path.of(csv + DELETED_SUFFIX);
+        return stamp(csv) + "|" + stamp(sidecar);
+    }
+
+    /**
+     * Size and modification time of a file, or "-" if there is none
+     */
+    static String stamp(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return "-";
+        }
+        return Files.size(file) + "@" + Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+    }
+
+    private FileState stateFor(CsvSchema<?> schema) throws IOException {
+        synchronized (files) {
+            FileState state = files.get(schema.getFileName());
+            if (state == null) {
+                state = new FileState();
+                for (String id : readDeletedIds(csvPath(schema).toString())) {
+                    state.deleted.put(id, ++state.sequence);
+                }
+                files.put(schema.getFileName(), state);
+            }
+            return state;
+        }
+    }
+
+    private Path csvPath(CsvSchema<?> schema) {
+        return new File(directory, schema.getFileName()).toPath();
+    }
+
+    /**
+     * Append rows to the CSV file, creating it with a header if needed, and force them to disk
+     */
+    private void appendToCsv(CsvSchema<?> schema, StringBuilder rows) throws IOException {
+        if (rows.length() == 0) {
+            return;
+        }
+        Path csv = csvPath(schema);
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            StringBuilder text = new StringBuilder();
+            if (size == 0) {
+                appendRow(text, schema.getColumns());
+            } else if (!endsWithNewline(channel, size)) {
+                text.append('\n');
+            }
+            text.append(rows);
+
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+            long position = size;
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static boolean endsWithNewline(FileChannel channel, long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+
+    /**
+     * Rewrite the deleted-IDs sidecar, or remove it when nothing is deleted
+     */
+    private void writeDeletedIds(CsvSchema<?> schema, FileState state) throws IOException {
+        Path sidecar = Path.of(csvPath(schema) + DELETED_SUFFIX);
+        if (state.deleted.isEmpty()) {
+            Files.deleteIfExists(sidecar);
+            return;
+        }
+        Path temp = Path.of(sidecar + ".tmp");
+        Files.write(temp, state.deleted.keySet(), StandardCharsets.UTF_8);
+        replace(temp, sidecar);
+    }
+
+    /**
+     * Copy anything appended to the CSV after offset from onto the end of target
+     */
+    private static void copyTail(Path csv, long from, Path target) throws IOException {
+        if (!Files.exists(csv)) {
+            return;
+        }
+        try (FileChannel source = FileChannel.open(csv, StandardOpenOption.READ);
+             FileChannel destination = FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.APPEND)) {
+            long position = from;
+            long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, destination);
+            }
+            destination.force(false);
+        }
+    }
+
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Append one CSV line, quoting fields that contain commas, quotes, line breaks
+     * or surrounding whitespace
+     */
+    static void appendRow(StringBuilder out, String[] fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            String value = fields[i] == null ? "" : fields[i];
+            if (needsQuotes(value)) {
+                out.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                out.append(value);
+            }
+        }
+        out.append('\n');
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        if (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' ') {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wait for a running compaction to finish and stop the background thread
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.healthcare.data;
+
+/**
+ * A single entity inserted into, updated in or deleted from a DataManager
+ */
+public class DataChangeEvent {
+
+    public enum Type {
+        INSERTED, UPDATED, DELETED
+    }
+
+    private final Type type;
+    private final Class<?> entityType;
+    private final String key;
+    private final Object entity;
+
+    DataChangeEvent(Type type, Class<?> entityType, String key, Object entity) {
+        this.type = type;
+        this.entityType = entityType;
+        this.key = key;
+        this.entity = entity;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Model class of the changed entity, e.g. Patient.class
+     */
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Primary key of the changed entity
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * The entity as it is now, or as it was before it was deleted
+     */
+    public Object getEntity() {
+        return entity;
+    }
+
+    /**
+     * The entity cast to the expected type, or null if the event is for another entity type
+     */
+    public <T> T getEntity(Class<T> type) {
+        return entityType == type ? type.cast(entity) : null;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + entityType.getSimpleName() + " " + key;
+    }
+}
@@ -0,0 +1,10 @@
+package com.healthcare.data;
+
+/**
+ * Receives every insert, update and delete made through a DataManager,
+ * on the thread that made the change
+ */
+@FunctionalInterface
+public interface DataChangeListener {
+    void dataChanged(DataChangeEvent event);
+}
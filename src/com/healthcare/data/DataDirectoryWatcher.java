@@ -0,0 +1,110 @@
+package com.healthcare.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a data directory and reports which CSV files have been created or modified.
+ *
+ * Files are often written in several steps, so a change is only reported once the
+ * directory has been quiet for a short while; several events for the same file are
+ * reported once. A change to a "<file>.deleted" sidecar is reported as a change to its
+ * CSV file. The callback runs on the watcher thread.
+ */
+class DataDirectoryWatcher implements Closeable {
+    // How long the directory must be quiet before pending changes are reported
+    private static final long QUIET_MILLIS = 500;
+
+    private final Path directory;
+    private final Set<String> fileNames;
+    private final Consumer<String> onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * @param fileNames the CSV file names to report; other files are ignored
+     * @param onChange called with the name of each changed CSV file
+     */
+    DataDirectoryWatcher(Path directory, Set<String> fileNames, Consumer<String> onChange) throws IOException {
+        this.directory = directory;
+        this.fileNames = fileNames;
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        this.thread = new Thread(this::watchLoop, "csv-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    private void watchLoop() {
+        Set<String> pending = new LinkedHashSet<>();
+        try {
+            while (true) {
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    // Quiet period over: report everything collected so far
+                    List<String> changed = new ArrayList<>(pending);
+                    pending.clear();
+                    changed.forEach(this::report);
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        pending.addAll(fileNames); // events were lost, so check every file
+                        continue;
+                    }
+                    String name = event.context().toString();
+                    if (name.endsWith(CsvWriteBack.DELETED_SUFFIX)) {
+                        name = name.substring(0, name.length() - CsvWriteBack.DELETED_SUFFIX.length());
+                    }
+                    if (fileNames.contains(name)) {
+                        pending.add(name);
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Stopped watching " + directory + ": directory is no longer accessible");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void report(String fileName) {
+        try {
+            onChange.accept(fileName);
+        } catch (RuntimeException e) {
+            System.err.println("Error reloading " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing directory watcher: " + e.getMessage());
+        }
+        thread.interrupt();
+    }
+}
@@ -1,403 +1,1261 @@
 package com.healthcare.data;
 
 import com.healthcare.model.*;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Data Manager class to load and manage all healthcare data
- * Uses BufferedReader for CSV parsing
+ * Uses CsvTokenizer for CSV parsing
+ *
+ * Safe to share between threads. Each entity type has its own store and lock (see
+ * EntityStore), so readers of one type are not held up by writers of another, and
+ * reads go on while a change is made. Changes to one entity type are made one at a time,
+ * each with its change log entry and listener calls.
  */
 public class DataManager {
-    private List<Patient> patients;
-    private List<Clinician> clinicians;
-    private List<Facility> facilities;
-    private List<Appointment> appointments;
-    private List<Prescription> prescriptions;
-    private List<Referral> referrals;
-    private List<Staff> staff;
+    // One thread per CSV file at most, bounded by the available cores
+    private static final int LOADER_THREADS = Math.min(7, Runtime.getRuntime().availableProcessors());
+    // Target size of each chunk when a single large file is parsed in parallel
+    private static final long PARSE_CHUNK_SIZE = 16L * 1024 * 1024;
+    // Binary snapshot kept alongside the CSV files
+    private static final String SNAPSHOT_FILE = ".healthcare.snapshot";
+    // Write-ahead log of changes made since the CSV files were loaded
+    private static final String CHANGE_LOG_FILE = ".healthcare.wal";
+
+    private EntityStore<Patient> patients;
+    private EntityStore<Clinician> clinicians;
+    private EntityStore<Facility> facilities;
+    private EntityStore<Appointment> appointments;
+    private EntityStore<Prescription> prescriptions;
+    private EntityStore<Referral> referrals;
+    private EntityStore<Staff> staff;
+
+    // Files of at least this many bytes are parsed in parallel chunks
+    private long parallelParseThreshold = 64L * 1024 * 1024;
+    // Read files through FileChannel.map rather than a Reader
+    private boolean memoryMappedLoading = true;
+    // Write a binary snapshot after loading CSVs and prefer it on the next load
+    private boolean snapshotEnabled = true;
+    // Bumped before the data files are written to; a snapshot read before that is not committed
+    private final AtomicInteger snapshotGeneration = new AtomicInteger();
+    // Record every add and delete in a durable change log
+    private boolean changeLogEnabled = true;
+    private volatile WriteAheadLog changeLog;
+    // Appends saved changes to the CSV files of the loaded directory
+    private volatile CsvWriteBack writeBack;
+    private volatile String dataDirectory;
+
+    // Hot reload of CSV files changed by other programs; the watcher is guarded by this
+    private DataDirectoryWatcher watcher;
+    private volatile Executor reloadExecutor;
+    private volatile Consumer<ReloadResult> reloadListener;
+
+    private final List<DataChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    // Foreign-key indexes
+    private ForeignKeyIndex<Patient> patientsByFacility;
+    private ForeignKeyIndex<Clinician> cliniciansByFacility;
+    private ForeignKeyIndex<Appointment> appointmentsByPatient;
+    private ForeignKeyIndex<Appointment> appointmentsByClinician;
+    private ForeignKeyIndex<Appointment> appointmentsByFacility;
+    private ForeignKeyIndex<Prescription> prescriptionsByPatient;
+    private ForeignKeyIndex<Prescription> prescriptionsByClinician;
+    private ForeignKeyIndex<Prescription> prescriptionsByAppointment;
+    private ForeignKeyIndex<Referral> referralsByPatient;
+    private ForeignKeyIndex<Referral> referralsByReferringClinician;
+    private ForeignKeyIndex<Referral> referralsByReceivingClinician;
+    private ForeignKeyIndex<Referral> referralsByReferringFacility;
+    private ForeignKeyIndex<Referral> referralsByReceivingFacility;
+    private ForeignKeyIndex<Referral> referralsByAppointment;
+    private ForeignKeyIndex<Staff> staffByFacility;
 
     public DataManager() {
-        patients = new ArrayList<>();
-        clinicians = new ArrayList<>();
-        facilities = new ArrayList<>();
-        appointments = new ArrayList<>();
-        prescriptions = new ArrayList<>();
-        referrals = new ArrayList<>();
-        staff = new ArrayList<>();
+        patients = new EntityStore<>(CsvSchemas.PATIENTS);
+        clinicians = new EntityStore<>(CsvSchemas.CLINICIANS);
+        facilities = new EntityStore<>(CsvSchemas.FACILITIES);
+        appointments = new EntityStore<>(CsvSchemas.APPOINTMENTS);
+        prescriptions = new EntityStore<>(CsvSchemas.PRESCRIPTIONS);
+        referrals = new EntityStore<>(CsvSchemas.REFERRALS);
+        staff = new EntityStore<>(CsvSchemas.STAFF);
+
+        patientsByFacility = patients.index(Patient::getGpSurgery);
+        cliniciansByFacility = clinicians.index(Clinician::getWorkplace);
+        appointmentsByPatient = appointments.index(Appointment::getPatientID);
+        appointmentsByClinician = appointments.index(Appointment::getClinicianID);
+        appointmentsByFacility = appointments.index(Appointment::getFacilityID);
+        prescriptionsByPatient = prescriptions.index(Prescription::getPatientID);
+        prescriptionsByClinician = prescriptions.index(Prescription::getClinicianID);
+        prescriptionsByAppointment = prescriptions.index(Prescription::getAppointmentID);
+        referralsByPatient = referrals.index(Referral::getPatientID);
+        referralsByReferringClinician = referrals.index(Referral::getReferringClinicianID);
+        referralsByReceivingClinician = referrals.index(Referral::getReceivingClinicianID);
+        referralsByReferringFacility = referrals.index(Referral::getReferringFacility);
+        referralsByReceivingFacility = referrals.index(Referral::getReceivingFacility);
+        referralsByAppointment = referrals.index(Referral::getAppointmentID);
+        staffByFacility = staff.index(Staff::getFacilityID);
+
+        patients.searchOn(Patient::getPatientID, Patient::getFirstName, Patient::getLastName,
+                Patient::getNhsNumber);
+        clinicians.searchOn(Clinician::getClinicianID, Clinician::getFirstName, Clinician::getLastName,
+                Clinician::getGmcNumber);
+        facilities.searchOn(Facility::getFacilityID, Facility::getName);
+        appointments.searchOn(Appointment::getAppointmentID, Appointment::getPatientID,
+                Appointment::getClinicianID);
+        prescriptions.searchOn(Prescription::getPrescriptionID, Prescription::getPatientID,
+                Prescription::getMedication);
+        referrals.searchOn(Referral::getReferralID, Referral::getPatientID);
+        staff.searchOn(Staff::getStaffID, Staff::getFirstName, Staff::getLastName);
     }
 
     /**
-     * Load all CSV files from the data directory
+     * Load all CSV files from the data directory on the calling thread.
+     * Data from a previously loaded directory is replaced, not merged.
+     * @see #loadAllData(String, Executor, LoadListener)
      */
-    public void loadAllData(String dataDirectory) {
-        loadPatients(dataDirectory + "/patients.csv");
-        loadClinicians(dataDirectory + "/clinicians.csv");
-        loadFacilities(dataDirectory + "/facilities.csv");
-        loadAppointments(dataDirectory + "/appointments.csv");
-        loadPrescriptions(dataDirectory + "/prescriptions.csv");
-        loadReferrals(dataDirectory + "/referrals.csv");
-        loadStaff(dataDirectory + "/staff.csv");
+    public LoadReport loadAllData(String dataDirectory) {
+        return loadAllData(dataDirectory, Runnable::run, new LoadListener() {
+        });
     }
 
     /**
-     * Parse CSV line handling quoted fields
+     * Load all CSV files from the data directory.
+     * If the directory holds a snapshot built from the CSV files and sidecars as they are
+     * now (same sizes and modification times), the snapshot is loaded instead and no CSV is
+     * parsed. Otherwise files are read and parsed in parallel on a
+     * bounded pool, and a fresh snapshot is written in the background.
+     * All work happens on the calling thread and the loader threads; the stores are filled
+     * one entity type at a time in dependency order (patients, clinicians and facilities
+     * before the records that reference them), and listener.entityLoaded is posted to applyOn
+     * after each, so a UI passing its own thread can show each entity as soon as it is in
+     * without doing any of the loading itself. The first entity replaces all data from a
+     * previous load.
+     * Changes recorded in the directory's change log are then replayed on top, and
+     * later changes are logged there until saveChanges writes them to the CSV files.
+     * Interrupting the calling thread cancels loading (see LoadReport.isCancelled); entities
+     * already replaced stay loaded, but nothing is logged or saved until the next full load.
      */
-    private String[] parseCSVLine(String line) {
-        List<String> fields = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder currentField = new StringBuilder();
+    public LoadReport loadAllData(String dataDirectory, Executor applyOn, LoadListener listener) {
+        LoadReport report = new LoadReport();
+        long start = System.nanoTime();
+        SharedValues sharedValues = new SharedValues();
+        File snapshot = new File(dataDirectory, SNAPSHOT_FILE);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicBoolean replaced = new AtomicBoolean();
+
+        List<Section<?>> sections = null;
+        if (snapshotEnabled && snapshot.isFile()) {
+            sections = readSnapshot(snapshot, dataDirectory, report, sharedValues);
+            if (sections != null) {
+                listener.loadStarted(0);
+                for (Section<?> section : sections) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        cancelled.set(true);
+                        break;
+                    }
+                    install(section, applyOn, listener, replaced, cancelled);
+                }
+            }
+        }
+        if (sections == null) {
+            Map<String, String> sources = snapshotEnabled ? sourceStamps(dataDirectory) : null;
+            int generation = snapshotGeneration.get();
+            sections = readCsvFiles(dataDirectory, report, applyOn, listener, cancelled, replaced, sharedValues);
+            if (!cancelled.get() && sources != null && !report.hasErrors()) {
+                writeSnapshotInBackground(snapshot, sections, sources, generation);
+            }
+        }
 
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                fields.add(currentField.toString().trim());
-                currentField = new StringBuilder();
-            } else {
-                currentField.append(c);
+        if (cancelled.get()) {
+            report.setCancelled(true);
+        } else {
+            if (changeLogEnabled) {
+                openChangeLog(dataDirectory, report);
+            }
+            writeBack = new CsvWriteBack(new File(dataDirectory));
+            this.dataDirectory = dataDirectory;
+            if (reloadListener != null) {
+                restartWatcher();
             }
         }
-        fields.add(currentField.toString().trim());
-        return fields.toArray(new String[0]);
+        report.setTotalMillis((System.nanoTime() - start) / 1_000_000);
+        report.setSharedValueBytes(sharedValues.getSavedBytes());
+        return report;
     }
 
-    public void loadPatients(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line = br.readLine(); // Skip header
-            while ((line = br.readLine()) != null && !line.trim().isEmpty()) {
-                String[] fields = parseCSVLine(line);
-                // Expected CSV (patients.csv):
-                // patient_id,first_name,last_name,date_of_birth,nhs_number,gender,phone_number,email,address,postcode,emergency_contact_name,emergency_contact_phone,registration_date,gp_surgery_id
-                if (fields.length >= 14) {
-                    Patient patient = new Patient(
-                            fields[0],  // patient_id
-                            fields[1],  // first_name
-                            fields[2],  // last_name
-                            fields[3],  // date_of_birth
-                            fields[5],  // gender
-                            fields[4],  // nhs_number
-                            fields[7],  // email
-                            fields[6],  // phone_number
-                            fields[8],  // address
-                            fields[9],  // postcode
-                            fields[10], // emergency_contact_name
-                            fields[11], // emergency_contact_phone
-                            fields[12], // registration_date
-                            fields[13]  // gp_surgery_id
-                    );
-                    patients.add(patient);
+    /**
+     * Put the rows of one entity type into its store, unless the load has been cancelled,
+     * and tell the listener on applyOn. The first entity of a load clears every store and
+     * detaches the previous directory.
+     */
+    private <T> void install(Section<T> section, Executor applyOn, LoadListener listener, AtomicBoolean replaced,
+                             AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            return;
+        }
+        if (replaced.compareAndSet(false, true)) {
+            detachDataDirectory();
+            allStores().forEach(EntityStore::clear);
+        }
+        section.store.addAll(section.rows);
+        Class<?> type = section.store.getSchema().getType();
+        int rows = section.store.size();
+        applyOn.execute(() -> listener.entityLoaded(type, rows));
+    }
+
+    /**
+     * Stop logging, saving and watching the currently loaded directory
+     */
+    private void detachDataDirectory() {
+        closeChangeLog();
+        if (writeBack != null) {
+            writeBack.close();
+            writeBack = null;
+        }
+        closeWatcher();
+        dataDirectory = null;
+    }
+
+    /**
+     * Parse the seven CSV files in parallel, installing each as soon as it and the
+     * entities it depends on are parsed
+     * @return the parsed rows, or null if loading was cancelled
+     */
+    private List<Section<?>> readCsvFiles(String dataDirectory, LoadReport report, Executor applyOn,
+                                          LoadListener listener, AtomicBoolean cancelled, AtomicBoolean replaced,
+                                          SharedValues sharedValues) {
+        long totalBytes = 0;
+        for (EntityStore<?> store : allStores()) {
+            totalBytes += new File(dataDirectory, store.getSchema().getFileName()).length();
+        }
+        listener.loadStarted(totalBytes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "csv-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Section<?>> sections = new ArrayList<>();
+            for (EntityStore<?> store : allStores()) {
+                sections.add(submitRead(executor, store, dataDirectory, report, listener, cancelled, sharedValues));
+            }
+            for (Section<?> section : sections) {
+                awaitRows(section);
+                if (cancelled.get() || Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
                 }
+                install(section, applyOn, listener, replaced, cancelled);
             }
+            return sections;
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            System.err.println("Data loading cancelled");
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> Section<T> submitRead(ExecutorService executor, EntityStore<T> store, String dataDirectory,
+                                      LoadReport report, LoadListener listener, AtomicBoolean cancelled,
+                                      SharedValues sharedValues) {
+        CsvSchema<T> schema = store.getSchema();
+        ReadProgress progress = new ReadProgress(schema.getFileName(), listener, cancelled);
+        RowMapper<T> mapper = sharedValues.mapper(schema);
+        Section<T> section = new Section<>(store);
+        section.pending = executor.submit(() -> readFile(dataDirectory, schema, mapper, report, progress));
+        return section;
+    }
+
+    private static <T> void awaitRows(Section<T> section) throws InterruptedException {
+        try {
+            section.rows = section.pending.get();
+        } catch (ExecutionException e) {
+            System.err.println("Error loading data: " + e.getCause());
+            section.rows = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Read one file for loadAllData, recording its row count and timing
+     */
+    private <T> List<T> readFile(String dataDirectory, CsvSchema<T> schema, RowMapper<T> mapper, LoadReport report,
+                                 ReadProgress progress) {
+        long start = System.nanoTime();
+        try {
+            List<T> rows = readRows(dataDirectory + "/" + schema.getFileName(), schema, mapper, progress);
+            report.record(schema.getFileName(), rows.size(), (System.nanoTime() - start) / 1_000_000, null);
+            return rows;
+        } catch (InterruptedIOException e) {
+            return new ArrayList<>(); // cancelled
         } catch (IOException e) {
-            System.err.println("Error loading patients: " + e.getMessage());
+            System.err.println("Error loading " + schema.getName() + ": " + e.getMessage());
+            report.record(schema.getFileName(), 0, (System.nanoTime() - start) / 1_000_000, e.getMessage());
+            return new ArrayList<>();
         }
     }
 
-    public void loadClinicians(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line = br.readLine(); // Skip header
-            while ((line = br.readLine()) != null && !line.trim().isEmpty()) {
-                String[] fields = parseCSVLine(line);
-                // Expected CSV (clinicians.csv):
-                // clinician_id,first_name,last_name,title,speciality,gmc_number,phone_number,email,workplace_id,workplace_type,employment_status,start_date
-                if (fields.length >= 12) {
-                    Clinician clinician = new Clinician(
-                            fields[0],  // clinician_id
-                            fields[1],  // first_name
-                            fields[2],  // last_name
-                            fields[3],  // title -> qualification
-                            fields[4],  // speciality -> specialty
-                            fields[5],  // gmc_number
-                            fields[8],  // workplace_id -> workplace
-                            fields[9],  // workplace_type
-                            fields[10], // employment_status
-                            fields[11], // start_date
-                            fields[7],  // email
-                            fields[6]   // phone_number
-                    );
-                    clinicians.add(clinician);
+    /**
+     * The stamp of every CSV file and deleted-rows sidecar of a data directory, by file name
+     * @return the stamps, or null if one cannot be read
+     */
+    private static Map<String, String> sourceStamps(String dataDirectory) {
+        Map<String, String> stamps = new LinkedHashMap<>();
+        try {
+            for (CsvSchema<?> schema : CsvSchemas.ALL) {
+                String csv = schema.getFileName();
+                String deleted = csv + CsvWriteBack.DELETED_SUFFIX;
+                stamps.put(csv, CsvWriteBack.stamp(new File(dataDirectory, csv).toPath()));
+                stamps.put(deleted, CsvWriteBack.stamp(new File(dataDirectory, deleted).toPath()));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading data file times: " + e.getMessage());
+            return null;
+        }
+        return stamps;
+    }
+
+    /**
+     * @return the snapshot contents, or null if the snapshot is unusable or any file it was
+     * built from has changed since
+     */
+    private List<Section<?>> readSnapshot(File snapshot, String dataDirectory, LoadReport report,
+                                          SharedValues sharedValues) {
+        try (SnapshotReader reader = new SnapshotReader(snapshot.toPath())) {
+            if (!reader.getSources().equals(sourceStamps(dataDirectory))) {
+                return null;
+            }
+            List<Section<?>> sections = new ArrayList<>();
+            for (EntityStore<?> store : allStores()) {
+                sections.add(readSection(reader, store, report, sharedValues));
+            }
+            report.setFromSnapshot(true);
+            return sections;
+        } catch (IOException e) {
+            System.err.println("Ignoring snapshot " + snapshot + ": " + e.getMessage());
+            report.clear();
+            return null;
+        }
+    }
+
+    private <T> Section<T> readSection(SnapshotReader reader, EntityStore<T> store, LoadReport report,
+                                       SharedValues sharedValues) throws IOException {
+        long start = System.nanoTime();
+        Section<T> section = new Section<>(store);
+        section.rows = reader.readSection(store.getSchema(), sharedValues.mapper(store.getSchema()));
+        report.record(store.getSchema().getFileName(), section.rows.size(),
+                (System.nanoTime() - start) / 1_000_000, null);
+        return section;
+    }
+
+    /**
+     * Write the rows as loaded to a snapshot, unless abandonSnapshot is called first
+     * @param sources stamps of the files the rows were read from, taken before reading them
+     * @param generation snapshotGeneration when the files were read
+     */
+    private void writeSnapshotInBackground(File snapshot, List<Section<?>> sections, Map<String, String> sources,
+                                           int generation) {
+        Thread writer = new Thread(() -> {
+            try (SnapshotWriter out = new SnapshotWriter(snapshot.toPath(), sections.size(), sources)) {
+                for (Section<?> section : sections) {
+                    if (snapshotGeneration.get() != generation) {
+                        return; // abandoned; closing deletes the partial file
+                    }
+                    writeSection(out, section);
+                }
+                synchronized (snapshotGeneration) {
+                    if (snapshotGeneration.get() == generation) {
+                        out.commit();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing snapshot: " + e.getMessage());
+            }
+        }, "snapshot-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static <T> void writeSection(SnapshotWriter out, Section<T> section) throws IOException {
+        out.writeSection(section.store.getSchema(), section.rows);
+    }
+
+    /**
+     * Stop a snapshot being written from committing, before the data files change under it.
+     * Once this returns no snapshot of the older rows can be committed.
+     */
+    private void abandonSnapshot() {
+        synchronized (snapshotGeneration) {
+            snapshotGeneration.incrementAndGet();
+        }
+    }
+
+    /**
+     * readRows sharing column values only within this file
+     */
+    private <T> List<T> readRows(String filePath, CsvSchema<T> schema) throws IOException {
+        return readRows(filePath, schema, new SharedValues().mapper(schema), ReadProgress.NONE);
+    }
+
+    /**
+     * Read a CSV file (skipping the header) and map each row with enough fields to an entity.
+     * Files at or above the parallel parse threshold are split into chunks and parsed in parallel,
+     * other files are read through a memory mapping or a Reader; all paths produce the same rows
+     * in the same order. Rows whose ID is listed in the file's deleted-rows sidecar are dropped.
+     */
+    private <T> List<T> readRows(String filePath, CsvSchema<T> schema, RowMapper<T> mapper, ReadProgress progress)
+            throws IOException {
+        List<T> rows = parseRows(filePath, mapper, progress);
+        Set<String> deleted = CsvWriteBack.readDeletedIds(filePath);
+        if (!deleted.isEmpty()) {
+            rows.removeIf(row -> deleted.contains(schema.keyOf(row)));
+        }
+        return rows;
+    }
+
+    private <T> List<T> parseRows(String filePath, RowMapper<T> checked, ReadProgress progress)
+            throws IOException {
+        long fileSize = new File(filePath).length();
+        if (fileSize >= parallelParseThreshold) {
+            return ChunkedCsvReader.read(filePath, PARSE_CHUNK_SIZE, checked, progress);
+        }
+        if (memoryMappedLoading) {
+            return MappedCsvReader.read(filePath, checked, progress);
+        }
+
+        List<T> rows = new ArrayList<>();
+        int reported = 0;
+        try (Reader in = new FileReader(filePath, StandardCharsets.UTF_8)) {
+            CsvTokenizer tokenizer = new CsvTokenizer(in);
+            tokenizer.next(); // Skip header
+            while (tokenizer.next()) {
+                T row = checked.map(tokenizer);
+                if (row != null) {
+                    rows.add(row);
+                }
+                if (rows.size() - reported >= ReadProgress.REPORT_ROWS) {
+                    progress.advance(0, rows.size() - reported); // the Reader does not expose a byte offset
+                    reported = rows.size();
                 }
             }
+        }
+        progress.advance(fileSize, rows.size() - reported);
+        return rows;
+    }
+
+    /**
+     * Set the file size (in bytes) from which a single CSV file is parsed in parallel chunks.
+     * Use Long.MAX_VALUE to always parse serially.
+     */
+    public void setParallelParseThreshold(long bytes) {
+        this.parallelParseThreshold = bytes;
+    }
+
+    /**
+     * Choose between memory-mapped loading (the default) and Reader-based loading,
+     * e.g. for file systems that do not support mapping
+     */
+    public void setMemoryMappedLoading(boolean memoryMappedLoading) {
+        this.memoryMappedLoading = memoryMappedLoading;
+    }
+
+    /**
+     * Enable or disable reading and writing the binary startup snapshot
+     */
+    public void setSnapshotEnabled(boolean snapshotEnabled) {
+        this.snapshotEnabled = snapshotEnabled;
+    }
+
+    /**
+     * Enable or disable the durable change log; takes effect on the next loadAllData
+     */
+    public void setChangeLogEnabled(boolean changeLogEnabled) {
+        this.changeLogEnabled = changeLogEnabled;
+    }
+
+    public void loadPatients(String filePath) {
+        try {
+            patients.addAll(readRows(filePath, CsvSchemas.PATIENTS));
+        } catch (IOException e) {
+            System.err.println("Error loading patients: " + e.getMessage());
+        }
+    }
+
+    public void loadClinicians(String filePath) {
+        try {
+            clinicians.addAll(readRows(filePath, CsvSchemas.CLINICIANS));
         } catch (IOException e) {
             System.err.println("Error loading clinicians: " + e.getMessage());
         }
     }
 
     public void loadFacilities(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line = br.readLine(); // Skip header
-            while ((line = br.readLine()) != null && !line.trim().isEmpty()) {
-                String[] fields = parseCSVLine(line);
-                // Expected CSV (facilities.csv):
-                // facility_id,facility_name,facility_type,address,postcode,phone_number,email,opening_hours,manager_name,capacity,specialities_offered
-                if (fields.length >= 11) {
-                    Facility facility = new Facility(
-                            fields[0],  // facility_id
-                            fields[1],  // facility_name
-                            fields[2],  // facility_type
-                            fields[3],  // address
-                            fields[4],  // postcode
-                            fields[5],  // phone_number
-                            fields[6],  // email
-                            fields[7],  // opening_hours
-                            fields[8],  // manager_name
-                            fields[10], // specialities_offered -> services
-                            fields[9]   // capacity
-                    );
-                    facilities.add(facility);
-                }
-            }
+        try {
+            facilities.addAll(readRows(filePath, CsvSchemas.FACILITIES));
         } catch (IOException e) {
             System.err.println("Error loading facilities: " + e.getMessage());
         }
     }
 
     public void loadAppointments(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line = br.readLine(); // Skip header
-            while ((line = br.readLine()) != null && !line.trim().isEmpty()) {
-                String[] fields = parseCSVLine(line);
-                // Expected CSV (appointments.csv):
-                // appointment_id,patient_id,clinician_id,facility_id,appointment_date,appointment_time,
-                // duration_minutes,appointment_type,status,reason_for_visit,notes,created_date,last_modified
-                if (fields.length >= 13) {
-                    Appointment appointment = new Appointment(
-                            fields[0],  // appointment_id
-                            fields[1],  // patient_id
-                            fields[2],  // clinician_id
-                            fields[3],  // facility_id
-                            fields[4],  // appointment_date
-                            fields[5],  // appointment_time
-                            fields[6],  // duration_minutes
-                            fields[7],  // appointment_type
-                            fields[8],  // status
-                            fields[9],  // reason_for_visit
-                            fields[10], // notes
-                            fields[11], // created_date
-                            fields[12]  // last_modified
-                    );
-                    appointments.add(appointment);
-                }
-            }
+        try {
+            appointments.addAll(readRows(filePath, CsvSchemas.APPOINTMENTS));
         } catch (IOException e) {
             System.err.println("Error loading appointments: " + e.getMessage());
         }
     }
 
     public void loadPrescriptions(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line = br.readLine(); // Skip header
-            while ((line = br.readLine()) != null && !line.trim().isEmpty()) {
-                String[] fields = parseCSVLine(line);
-                // Expected CSV (prescriptions.csv):
-                // prescription_id,patient_id,clinician_id,appointment_id,prescription_date,medication_name,
-                // dosage,frequency,duration_days,quantity,instructions,pharmacy_name,status,issue_date,collection_date
-                if (fields.length >= 15) {
-                    Prescription prescription = new Prescription(
-                            fields[0],   // prescription_id
-                            fields[1],   // patient_id
-                            fields[2],   // clinician_id
-                            fields[3],   // appointment_id
-                            fields[5],   // medication_name
-                            fields[6],   // dosage
-                            fields[7],   // frequency
-                            fields[8],   // duration_days
-                            fields[9],   // quantity
-                            fields[11],  // pharmacy_name
-                            fields[4],   // prescription_date
-                            fields[13],  // issue_date
-                            fields[14],  // collection_date
-                            fields[12],  // status -> collectionStatus
-                            fields[10]   // instructions -> notes
-                    );
-                    prescriptions.add(prescription);
-                }
-            }
+        try {
+            prescriptions.addAll(readRows(filePath, CsvSchemas.PRESCRIPTIONS));
         } catch (IOException e) {
             System.err.println("Error loading prescriptions: " + e.getMessage());
         }
     }
 
     public void loadReferrals(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line = br.readLine(); // Skip header
-            while ((line = br.readLine()) != null && !line.trim().isEmpty()) {
-                String[] fields = parseCSVLine(line);
-                // Expected CSV (referrals.csv):
-                // referral_id,patient_id,referring_clinician_id,referred_to_clinician_id,
-                // referring_facility_id,referred_to_facility_id,referral_date,urgency_level,
-                // referral_reason,clinical_summary,requested_investigations,status,appointment_id,notes,created_date,last_updated
-                if (fields.length >= 16) {
-                    Referral referral = new Referral(
-                            fields[0],   // referral_id
-                            fields[1],   // patient_id
-                            fields[2],   // referring_clinician_id
-                            fields[3],   // referred_to_clinician_id
-                            fields[4],   // referring_facility_id
-                            fields[5],   // referred_to_facility_id
-                            fields[6],   // referral_date
-                            fields[7],   // urgency_level
-                            fields[8],   // referral_reason
-                            fields[9],   // clinical_summary
-                            fields[10],  // requested_investigations
-                            fields[12],  // appointment_id
-                            fields[13],  // notes
-                            fields[11],  // status
-                            fields[14],  // created_date
-                            fields[15]   // last_updated
-                    );
-                    referrals.add(referral);
-                }
-            }
+        try {
+            referrals.addAll(readRows(filePath, CsvSchemas.REFERRALS));
         } catch (IOException e) {
             System.err.println("Error loading referrals: " + e.getMessage());
         }
     }
 
     public void loadStaff(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line = br.readLine(); // Skip header
-            while ((line = br.readLine()) != null && !line.trim().isEmpty()) {
-                String[] fields = parseCSVLine(line);
-                // Expected CSV (staff.csv):
-                // staff_id,first_name,last_name,role,department,facility_id,phone_number,email,employment_status,start_date,line_manager,access_level
-                if (fields.length >= 12) {
-                    Staff staffMember = new Staff(
-                            fields[0],  // staff_id
-                            fields[1],  // first_name
-                            fields[2],  // last_name
-                            fields[3],  // role
-                            fields[4],  // department
-                            fields[5],  // facility_id
-                            fields[7],  // email
-                            fields[6],  // phone_number
-                            fields[8],  // employment_status
-                            fields[9],  // start_date
-                            fields[10], // line_manager
-                            fields[11]  // access_level
-                    );
-                    staff.add(staffMember);
+        try {
+            staff.addAll(readRows(filePath, CsvSchemas.STAFF));
+        } catch (IOException e) {
+            System.err.println("Error loading staff: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replay the change log of a data directory and log further changes to it
+     */
+    private void openChangeLog(String dataDirectory, LoadReport report) {
+        closeChangeLog();
+        try {
+            WriteAheadLog log = new WriteAheadLog(new File(dataDirectory, CHANGE_LOG_FILE).toPath());
+            int[] replayed = {0};
+            log.replay(entry -> {
+                if (applyLogEntry(entry)) {
+                    replayed[0]++;
                 }
+            });
+            report.setReplayedChanges(replayed[0]);
+            changeLog = log;
+        } catch (IOException e) {
+            System.err.println("Error opening change log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flush and close the change log; later changes are kept in memory only
+     */
+    public void closeChangeLog() {
+        if (changeLog != null) {
+            try {
+                changeLog.close();
+            } catch (IOException e) {
+                System.err.println("Error closing change log: " + e.getMessage());
+            }
+            changeLog = null;
+        }
+    }
+
+    private boolean applyLogEntry(WriteAheadLog.Entry entry) {
+        for (EntityStore<?> store : allStores()) {
+            if (store.getSchema().getName().equals(entry.entity)) {
+                return applyLogEntry(store, entry);
+            }
+        }
+        System.err.println("Skipping change log entry for unknown entity " + entry.entity);
+        return false;
+    }
+
+    private <T> boolean applyLogEntry(EntityStore<T> store, WriteAheadLog.Entry entry) {
+        if (entry.operation == WriteAheadLog.DELETE) {
+            if (!store.delete(entry.fields[0])) {
+                return false;
             }
+            store.markUnsaved(entry.fields[0]);
+            return true;
+        }
+        T entity = store.getSchema().fromRow(new ArrayRow(entry.fields));
+        if (entity == null) {
+            return false;
+        }
+        store.add(entity);
+        store.markUnsaved(store.getSchema().keyOf(entity));
+        return true;
+    }
+
+    /**
+     * Watch the loaded data directory and apply changes other programs make to its CSV files.
+     * A changed file is parsed and diffed against its store by primary key on a background
+     * thread; only the inserted, updated and deleted rows are then applied on applyOn, and
+     * listener is told what changed. Rows with unsaved local changes are left alone, and
+     * files changed only by this DataManager's own saves are not reloaded.
+     * The watch moves to the new directory on each loadAllData.
+     */
+    public void startWatching(Executor applyOn, Consumer<ReloadResult> listener) {
+        this.reloadExecutor = applyOn;
+        this.reloadListener = listener;
+        restartWatcher();
+    }
+
+    public void stopWatching() {
+        reloadListener = null;
+        reloadExecutor = null;
+        closeWatcher();
+    }
+
+    private synchronized void closeWatcher() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Called when loading finishes on the loading thread, or from startWatching
+     */
+    private synchronized void restartWatcher() {
+        closeWatcher();
+        if (dataDirectory == null) {
+            return;
+        }
+        Set<String> fileNames = new HashSet<>();
+        for (EntityStore<?> store : allStores()) {
+            fileNames.add(store.getSchema().getFileName());
+        }
+        try {
+            watcher = new DataDirectoryWatcher(new File(dataDirectory).toPath(), fileNames, this::reloadFile);
+            watcher.start();
         } catch (IOException e) {
-            System.err.println("Error loading staff: " + e.getMessage());
+            System.err.println("Error watching data directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called on the watcher thread when a CSV file has changed
+     */
+    private void reloadFile(String fileName) {
+        for (EntityStore<?> store : allStores()) {
+            if (store.getSchema().getFileName().equals(fileName)) {
+                reloadFile(store);
+            }
+        }
+    }
+
+    private <T> void reloadFile(EntityStore<T> store) {
+        String directory = dataDirectory;
+        Executor applyOn = reloadExecutor;
+        Consumer<ReloadResult> listener = reloadListener;
+        CsvWriteBack writeBack = this.writeBack;
+        if (directory == null || applyOn == null || listener == null) {
+            return;
+        }
+        if (writeBack != null && writeBack.isOwnWrite(store.getSchema().getFileName())) {
+            return; // our own save or compaction; the store already has these rows
+        }
+        abandonSnapshot();
+        ReloadDelta<T> delta;
+        try {
+            delta = diff(store, readRows(directory + "/" + store.getSchema().getFileName(), store.getSchema()));
+        } catch (IOException e) {
+            System.err.println("Error reloading " + store.getSchema().getName() + ": " + e.getMessage());
+            return;
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        applyOn.execute(() -> {
+            if (!directory.equals(dataDirectory)) {
+                return; // a different directory was loaded meanwhile
+            }
+            ReloadResult result = applyReload(store, delta);
+            if (result.hasChanges()) {
+                listener.accept(result);
+            }
+        });
+    }
+
+    /**
+     * Rows a reload changes, and the entity each replaces as the diff saw it
+     */
+    private static class ReloadDelta<T> {
+        final List<T> inserted = new ArrayList<>();
+        final List<T> updatedFrom = new ArrayList<>();
+        final List<T> updatedTo = new ArrayList<>();
+        final List<T> deleted = new ArrayList<>();
+
+        boolean isEmpty() {
+            return inserted.isEmpty() && updatedTo.isEmpty() && deleted.isEmpty();
+        }
+    }
+
+    /**
+     * Compare freshly read rows with a store by primary key, on the reload thread and
+     * without holding up changes to the store
+     */
+    private static <T> ReloadDelta<T> diff(EntityStore<T> store, List<T> rows) {
+        CsvSchema<T> schema = store.getSchema();
+        ReloadDelta<T> delta = new ReloadDelta<>();
+
+        // A later row with the same ID wins, as on a full load
+        Map<String, T> fresh = new LinkedHashMap<>();
+        for (T row : rows) {
+            fresh.put(schema.keyOf(row), row);
+        }
+        for (T current : store.list()) {
+            if (!fresh.containsKey(schema.keyOf(current))) {
+                delta.deleted.add(current);
+            }
+        }
+        for (Map.Entry<String, T> row : fresh.entrySet()) {
+            T current = store.find(row.getKey());
+            if (current == null) {
+                delta.inserted.add(row.getValue());
+            } else if (!Arrays.equals(schema.toRow(current), schema.toRow(row.getValue()))) {
+                delta.updatedFrom.add(current);
+                delta.updatedTo.add(row.getValue());
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Apply the rows of a reload that the store still holds as the diff saw them. Rows
+     * with unsaved local changes, or changed since the diff, are left alone.
+     */
+    private <T> ReloadResult applyReload(EntityStore<T> store, ReloadDelta<T> delta) {
+        CsvSchema<T> schema = store.getSchema();
+        ReloadResult result = new ReloadResult(schema.getName(), schema.getFileName());
+        synchronized (store) {
+            for (T seen : delta.deleted) {
+                String id = schema.keyOf(seen);
+                if (store.isUnsaved(id) || store.find(id) != seen) {
+                    result.skipped();
+                } else {
+                    store.remove(id);
+                    result.deleted(id);
+                    fireChange(DataChangeEvent.Type.DELETED, store, seen);
+                }
+            }
+            for (int i = 0; i < delta.updatedTo.size(); i++) {
+                T row = delta.updatedTo.get(i);
+                String id = schema.keyOf(row);
+                if (store.isUnsaved(id) || store.find(id) != delta.updatedFrom.get(i)) {
+                    result.skipped();
+                } else {
+                    store.add(row);
+                    result.updated(id);
+                    fireChange(DataChangeEvent.Type.UPDATED, store, row);
+                }
+            }
+            for (T row : delta.inserted) {
+                String id = schema.keyOf(row);
+                if (store.isUnsaved(id) || store.find(id) != null) {
+                    result.skipped();
+                } else {
+                    store.add(row);
+                    result.inserted(id);
+                    fireChange(DataChangeEvent.Type.INSERTED, store, row);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write every change made since the last save to the CSV files of the loaded directory.
+     * Only the changed rows are written. Once all stores are saved the change log is emptied.
+     * @return true if all changes were saved
+     */
+    public boolean saveChanges() {
+        return saveChanges(allStores(), 0);
+    }
+
+    /**
+     * Hold every store's change monitor, in a fixed order, while saving. Every change saved
+     * has queued its log record by then, and every later change queues its record after the
+     * truncate, which the log's writer thread runs in queue order: the truncate discards
+     * exactly the saved changes' records, even those still waiting to be written.
+     */
+    private boolean saveChanges(List<EntityStore<?>> stores, int held) {
+        if (held < stores.size()) {
+            synchronized (stores.get(held)) {
+                return saveChanges(stores, held + 1);
+            }
+        }
+        CsvWriteBack writeBack = this.writeBack;
+        WriteAheadLog changeLog = this.changeLog;
+        if (writeBack == null) {
+            System.err.println("Error saving changes: no data directory loaded");
+            return false;
+        }
+        abandonSnapshot(); // it would hold the rows as loaded, not as saved
+        boolean saved = true;
+        for (EntityStore<?> store : allStores()) {
+            saved &= saveStore(writeBack, store);
+        }
+        if (saved && changeLog != null) {
+            try {
+                changeLog.truncate();
+            } catch (IOException e) {
+                System.err.println("Error truncating change log: " + e.getMessage());
+            }
+        }
+        return saved;
+    }
+
+    private static <T> boolean saveStore(CsvWriteBack writeBack, EntityStore<T> store) {
+        List<String> ids = store.takeUnsaved();
+        try {
+            writeBack.save(store, ids);
+            return true;
+        } catch (IOException e) {
+            store.markUnsaved(ids);
+            System.err.println("Error saving " + store.getSchema().getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * True if any entity was added, changed or deleted since the data was last saved
+     */
+    public boolean hasUnsavedChanges() {
+        for (EntityStore<?> store : allStores()) {
+            if (store.hasUnsaved()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add or replace an entity, log it and tell the listeners. The change and its event
+     * happen under the store's monitor once the log has taken the record; waiting for the
+     * record to be durable happens outside it, so concurrent writers share one fsync.
+     */
+    private <T> void add(EntityStore<T> store, T entity) {
+        CompletableFuture<Void> logged;
+        synchronized (store) {
+            logged = logAdd(store, entity);
+            T previous = store.add(entity);
+            fireChange(previous == null ? DataChangeEvent.Type.INSERTED : DataChangeEvent.Type.UPDATED, store, entity);
+        }
+        awaitDurable(logged);
+    }
+
+    /**
+     * Queue the change log record of an add, before the store is changed
+     * @return completes once the record is durable, or null if nothing is logged
+     */
+    private <T> CompletableFuture<Void> logAdd(EntityStore<T> store, T entity) {
+        store.markUnsaved(store.getSchema().keyOf(entity));
+        return log(WriteAheadLog.ADD, store, store.getSchema().toRow(entity));
+    }
+
+    private <T> CompletableFuture<Void> logDelete(EntityStore<T> store, String id) {
+        store.markUnsaved(id);
+        return log(WriteAheadLog.DELETE, store, new String[]{id});
+    }
+
+    /**
+     * A log closed by closeChangeLog while the change was on its way keeps the change in
+     * memory only, as for any change made after closing it
+     */
+    private CompletableFuture<Void> log(byte operation, EntityStore<?> store, String[] fields) {
+        WriteAheadLog log = changeLog;
+        if (log == null) {
+            return null;
+        }
+        try {
+            return log.append(operation, store.getSchema().getName(), fields);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replace an entity in place, keeping its position, and tell the listeners with one
+     * UPDATED event. If the new entity has a different ID it is a rename: the old entity is
+     * deleted and the new one inserted, unless another entity already has that ID.
+     * @return false if there is no entity with the ID, or the new ID is taken
+     */
+    private <T> boolean update(EntityStore<T> store, String id, T entity) {
+        CompletableFuture<Void> deleteLogged;
+        CompletableFuture<Void> addLogged;
+        synchronized (store) {
+            // Check first so nothing is logged for an update that cannot happen; holding
+            // the monitor keeps other changes out until replace
+            String newId = store.getSchema().keyOf(entity);
+            boolean renamed = !id.equals(newId);
+            if (store.find(id) == null || (renamed && store.find(newId) != null)) {
+                return false;
+            }
+            deleteLogged = renamed ? logDelete(store, id) : null;
+            addLogged = logAdd(store, entity);
+            T previous = store.replace(id, entity);
+            if (renamed) {
+                fireChange(DataChangeEvent.Type.DELETED, store, previous);
+            }
+            fireChange(renamed ? DataChangeEvent.Type.INSERTED : DataChangeEvent.Type.UPDATED, store, entity);
+        }
+        awaitDurable(deleteLogged);
+        awaitDurable(addLogged);
+        return true;
+    }
+
+    private <T> boolean delete(EntityStore<T> store, String id) {
+        CompletableFuture<Void> logged;
+        synchronized (store) {
+            if (store.find(id) == null) {
+                return false;
+            }
+            logged = logDelete(store, id);
+            T removed = store.remove(id);
+            fireChange(DataChangeEvent.Type.DELETED, store, removed);
+        }
+        awaitDurable(logged);
+        return true;
+    }
+
+    /**
+     * Register a listener for every insert, update and delete made after this call.
+     * loadAllData replaces all data without per-row events.
+     */
+    public void addChangeListener(DataChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(DataChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    private <T> void fireChange(DataChangeEvent.Type type, EntityStore<T> store, T entity) {
+        if (changeListeners.isEmpty()) {
+            return;
+        }
+        DataChangeEvent event = new DataChangeEvent(type, store.getSchema().getType(),
+                store.getSchema().keyOf(entity), entity);
+        for (DataChangeListener listener : changeListeners) {
+            listener.dataChanged(event);
+        }
+    }
+
+    private void awaitDurable(CompletableFuture<Void> write) {
+        if (write == null) {
+            return;
+        }
+        try {
+            write.join();
+        } catch (CompletionException e) {
+            System.err.println("Error writing change log: " + e.getCause().getMessage());
+        }
+    }
+
+    private List<EntityStore<?>> allStores() {
+        return List.of(patients, clinicians, facilities, appointments, prescriptions, referrals, staff);
+    }
+
+    /**
+     * IDs of the entities of a type whose ID, name or NHS number (for patients), or a word
+     * of one, starts with the text, ignoring case. Answered from an index, so it is quick
+     * enough to run on every keystroke; it does not look inside other fields.
+     * The index is built in the background on first use, and until it is ready this
+     * returns null.
+     */
+    public Set<String> search(Class<?> entityType, String text) {
+        for (EntityStore<?> store : allStores()) {
+            if (store.getSchema().getType() == entityType) {
+                return store.search(text);
+            }
+        }
+        throw new IllegalArgumentException("Not an entity type: " + entityType.getName());
+    }
+
+    /**
+     * All data as it is now, unaffected by later changes, for consistent reports.
+     * Taking one holds up changes only for as long as it takes to copy each store's list
+     * of chunks; reading it never does. Close it when done.
+     */
+    public DataSnapshot snapshot() {
+        List<EntityStore<?>> stores = allStores();
+        long[] stamps = new long[stores.size()];
+        for (int i = 0; i < stamps.length; i++) {
+            stamps[i] = stores.get(i).lockChanges();
+        }
+        try {
+            return new DataSnapshot(patients.snapshotLocked(), clinicians.snapshotLocked(),
+                    facilities.snapshotLocked(), appointments.snapshotLocked(), prescriptions.snapshotLocked(),
+                    referrals.snapshotLocked(), staff.snapshotLocked());
+        } finally {
+            for (int i = stamps.length - 1; i >= 0; i--) {
+                stores.get(i).unlockChanges(stamps[i]);
+            }
         }
     }
 
     // Getters
     public List<Patient> getPatients() {
-        return patients;
+        return patients.list();
     }
 
     public List<Clinician> getClinicians() {
-        return clinicians;
+        return clinicians.list();
     }
 
     public List<Facility> getFacilities() {
-        return facilities;
+        return facilities.list();
     }
 
     public List<Appointment> getAppointments() {
-        return appointments;
+        return appointments.list();
     }
 
     public List<Prescription> getPrescriptions() {
-        return prescriptions;
+        return prescriptions.list();
     }
 
     public List<Referral> getReferrals() {
-        return referrals;
+        return referrals.list();
     }
 
     public List<Staff> getStaff() {
-        return staff;
+        return staff.list();
     }
 
     // Add methods
     public void addPatient(Patient patient) {
-        patients.add(patient);
+        add(patients, patient);
     }
 
     public void addClinician(Clinician clinician) {
-        clinicians.add(clinician);
+        add(clinicians, clinician);
     }
 
     public void addFacility(Facility facility) {
-        facilities.add(facility);
+        add(facilities, facility);
     }
 
     public void addAppointment(Appointment appointment) {
-        appointments.add(appointment);
+        add(appointments, appointment);
     }
 
     public void addPrescription(Prescription prescription) {
-        prescriptions.add(prescription);
+        add(prescriptions, prescription);
     }
 
     public void addReferral(Referral referral) {
-        referrals.add(referral);
+        add(referrals, referral);
     }
 
     public void addStaff(Staff staffMember) {
-        staff.add(staffMember);
+        add(staff, staffMember);
+    }
+
+    // Update methods
+    public boolean updatePatient(String patientID, Patient patient) {
+        return update(patients, patientID, patient);
+    }
+
+    public boolean updateClinician(String clinicianID, Clinician clinician) {
+        return update(clinicians, clinicianID, clinician);
+    }
+
+    public boolean updateFacility(String facilityID, Facility facility) {
+        return update(facilities, facilityID, facility);
+    }
+
+    public boolean updateAppointment(String appointmentID, Appointment appointment) {
+        return update(appointments, appointmentID, appointment);
+    }
+
+    public boolean updatePrescription(String prescriptionID, Prescription prescription) {
+        return update(prescriptions, prescriptionID, prescription);
+    }
+
+    public boolean updateReferral(String referralID, Referral referral) {
+        return update(referrals, referralID, referral);
+    }
+
+    public boolean updateStaff(String staffID, Staff staffMember) {
+        return update(staff, staffID, staffMember);
     }
 
     // Delete methods
     public boolean deletePatient(String patientID) {
-        return patients.removeIf(p -> p.getPatientID().equals(patientID));
+        return delete(patients, patientID);
     }
 
     public boolean deleteClinician(String clinicianID) {
-        return clinicians.removeIf(c -> c.getClinicianID().equals(clinicianID));
+        return delete(clinicians, clinicianID);
     }
 
     public boolean deleteFacility(String facilityID) {
-        return facilities.removeIf(f -> f.getFacilityID().equals(facilityID));
+        return delete(facilities, facilityID);
     }
 
     public boolean deleteAppointment(String appointmentID) {
-        return appointments.removeIf(a -> a.getAppointmentID().equals(appointmentID));
+        return delete(appointments, appointmentID);
     }
 
     public boolean deletePrescription(String prescriptionID) {
-        return prescriptions.removeIf(p -> p.getPrescriptionID().equals(prescriptionID));
+        return delete(prescriptions, prescriptionID);
     }
 
     public boolean deleteReferral(String referralID) {
-        return referrals.removeIf(r -> r.getReferralID().equals(referralID));
+        return delete(referrals, referralID);
     }
 
     public boolean deleteStaff(String staffID) {
-        return staff.removeIf(s -> s.getStaffID().equals(staffID));
+        return delete(staff, staffID);
     }
 
     // Find methods
     public Patient findPatient(String patientID) {
-        return patients.stream()
-                .filter(p -> p.getPatientID().equals(patientID))
-                .findFirst()
-                .orElse(null);
+        return patients.find(patientID);
     }
 
     public Clinician findClinician(String clinicianID) {
-        return clinicians.stream()
-                .filter(c -> c.getClinicianID().equals(clinicianID))
-                .findFirst()
-                .orElse(null);
+        return clinicians.find(clinicianID);
     }
 
     public Facility findFacility(String facilityID) {
-        return facilities.stream()
-                .filter(f -> f.getFacilityID().equals(facilityID))
-                .findFirst()
-                .orElse(null);
+        return facilities.find(facilityID);
+    }
+
+    public Appointment findAppointment(String appointmentID) {
+        return appointments.find(appointmentID);
+    }
+
+    public Prescription findPrescription(String prescriptionID) {
+        return prescriptions.find(prescriptionID);
     }
-}
 
+    public Referral findReferral(String referralID) {
+        return referrals.find(referralID);
+    }
+
+    public Staff findStaff(String staffID) {
+        return staff.find(staffID);
+    }
+
+    // Foreign-key lookups
+    public List<Patient> getPatientsForFacility(String facilityID) {
+        return patients.lookup(patientsByFacility, facilityID);
+    }
+
+    public List<Clinician> getCliniciansForFacility(String facilityID) {
+        return clinicians.lookup(cliniciansByFacility, facilityID);
+    }
+
+    public List<Appointment> getAppointmentsForPatient(String patientID) {
+        return appointments.lookup(appointmentsByPatient, patientID);
+    }
+
+    public List<Appointment> getAppointmentsForClinician(String clinicianID) {
+        return appointments.lookup(appointmentsByClinician, clinicianID);
+    }
 
+    public List<Appointment> getAppointmentsForFacility(String facilityID) {
+        return appointments.lookup(appointmentsByFacility, facilityID);
+    }
+
+    public List<Prescription> getPrescriptionsForPatient(String patientID) {
+        return prescriptions.lookup(prescriptionsByPatient, patientID);
+    }
 
+    public List<Prescription> getPrescriptionsForClinician(String clinicianID) {
+        return prescriptions.lookup(prescriptionsByClinician, clinicianID);
+    }
+
+    public List<Prescription> getPrescriptionsForAppointment(String appointmentID) {
+        return prescriptions.lookup(prescriptionsByAppointment, appointmentID);
+    }
+
+    public List<Referral> getReferralsForPatient(String patientID) {
+        return referrals.lookup(referralsByPatient, patientID);
+    }
+
+    /**
+     * Referrals where the clinician is either the referring or the receiving clinician
+     */
+    public List<Referral> getReferralsForClinician(String clinicianID) {
+        return union(referrals.lookup(referralsByReferringClinician, clinicianID),
+                referrals.lookup(referralsByReceivingClinician, clinicianID));
+    }
+
+    /**
+     * Referrals where the facility is either the referring or the receiving facility
+     */
+    public List<Referral> getReferralsForFacility(String facilityID) {
+        return union(referrals.lookup(referralsByReferringFacility, facilityID),
+                referrals.lookup(referralsByReceivingFacility, facilityID));
+    }
+
+    public List<Referral> getReferralsForAppointment(String appointmentID) {
+        return referrals.lookup(referralsByAppointment, appointmentID);
+    }
+
+    public List<Staff> getStaffForFacility(String facilityID) {
+        return staff.lookup(staffByFacility, facilityID);
+    }
+
+    private static <T> List<T> union(List<T> first, List<T> second) {
+        if (second.isEmpty()) {
+            return first;
+        }
+        List<T> result = new ArrayList<>(first);
+        Set<T> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        seen.addAll(first);
+        for (T entity : second) {
+            if (seen.add(entity)) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rows of one entity type read by loadAllData, before they are added to the store
+     */
+    private static class Section<T> {
+        final EntityStore<T> store;
+        Future<List<T>> pending;
+        List<T> rows;
+
+        Section(EntityStore<T> store) {
+            this.store = store;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.healthcare.data;
+
+import com.healthcare.model.*;
+import java.util.List;
+
+/**
+ * Read-only view of all data as it was when DataManager.snapshot() was called, for
+ * reports that must add up while others keep editing. Reading it takes no locks and
+ * changes made meanwhile never show up in it.
+ *
+ * The snapshot shares memory with the live data, and while it is open each change
+ * copies the part of the store it touches. Close it when done, e.g. with
+ * try-with-resources, so changes go back to working in place and old versions can be
+ * collected; lists obtained from it must not be used after that.
+ */
+public class DataSnapshot implements AutoCloseable {
+    private final StoreSnapshot<Patient> patients;
+    private final StoreSnapshot<Clinician> clinicians;
+    private final StoreSnapshot<Facility> facilities;
+    private final StoreSnapshot<Appointment> appointments;
+    private final StoreSnapshot<Prescription> prescriptions;
+    private final StoreSnapshot<Referral> referrals;
+    private final StoreSnapshot<Staff> staff;
+
+    DataSnapshot(StoreSnapshot<Patient> patients, StoreSnapshot<Clinician> clinicians,
+                 StoreSnapshot<Facility> facilities, StoreSnapshot<Appointment> appointments,
+                 StoreSnapshot<Prescription> prescriptions, StoreSnapshot<Referral> referrals,
+                 StoreSnapshot<Staff> staff) {
+        this.patients = patients;
+        this.clinicians = clinicians;
+        this.facilities = facilities;
+        this.appointments = appointments;
+        this.prescriptions = prescriptions;
+        this.referrals = referrals;
+        this.staff = staff;
+    }
+
+    /**
+     * Number of changes made to the data before this snapshot; two snapshots with the
+     * same version hold the same data
+     */
+    public long getVersion() {
+        return patients.getChanges() + clinicians.getChanges() + facilities.getChanges()
+                + appointments.getChanges() + prescriptions.getChanges() + referrals.getChanges()
+                + staff.getChanges();
+    }
+
+    public List<Patient> getPatients() {
+        return patients.list();
+    }
+
+    public List<Clinician> getClinicians() {
+        return clinicians.list();
+    }
+
+    public List<Facility> getFacilities() {
+        return facilities.list();
+    }
+
+    public List<Appointment> getAppointments() {
+        return appointments.list();
+    }
+
+    public List<Prescription> getPrescriptions() {
+        return prescriptions.list();
+    }
+
+    public List<Referral> getReferrals() {
+        return referrals.list();
+    }
+
+    public List<Staff> getStaff() {
+        return staff.list();
+    }
+
+    // Find methods; the first find of a type indexes all its entities
+    public Patient findPatient(String patientID) {
+        return patients.find(patientID);
+    }
+
+    public Clinician findClinician(String clinicianID) {
+        return clinicians.find(clinicianID);
+    }
+
+    public Facility findFacility(String facilityID) {
+        return facilities.find(facilityID);
+    }
+
+    public Appointment findAppointment(String appointmentID) {
+        return appointments.find(appointmentID);
+    }
+
+    public Prescription findPrescription(String prescriptionID) {
+        return prescriptions.find(prescriptionID);
+    }
+
+    public Referral findReferral(String referralID) {
+        return referrals.find(referralID);
+    }
+
+    public Staff findStaff(String staffID) {
+        return staff.find(staffID);
+    }
+
+    /**
+     * Release the snapshot; calling this again does nothing
+     */
+    @Override
+    public void close() {
+        patients.close();
+        clinicians.close();
+        facilities.close();
+        appointments.close();
+        prescriptions.close();
+        referrals.close();
+        staff.close();
+    }
+}
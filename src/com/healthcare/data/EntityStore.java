@@ -0,0 +1,500 @@
+package com.healthcare.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * ID-keyed store for one entity type.
+ * Keeps insertion order and gives O(1) add, find and delete by primary key.
+ *
+ * Safe to use from several threads. Each store has its own StampedLock, so work on one
+ * entity type never waits for another: find and size read optimistically without
+ * locking, list hands out an immutable view of the chunks, and the other reads share a
+ * read lock. Each change takes the write lock briefly.
+ * Callers that need several changes to happen as one, such as DataManager, synchronize
+ * on the store around them; readers never wait for that.
+ *
+ * Entities are kept in slots numbered in insertion order, grouped into chunks of 1024.
+ * A deleted entity leaves an empty slot until enough pile up to compact them away.
+ * snapshot() copies only the list of chunks; the chunks themselves are shared with the
+ * snapshot, and a change to a chunk copies it first while any snapshot is open, so a
+ * snapshot keeps seeing the data as it was without ever holding up a change. list() shares
+ * the chunks the same way, so after a change it costs a copy of the list of chunks, and
+ * the next change to each chunk copies that one chunk.
+ */
+class EntityStore<T> {
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final CsvSchema<T> schema;
+    private final Function<T, String> keyOf;
+    private final Map<String, Integer> slotOf = new ConcurrentHashMap<>(); // primary key -> slot; concurrent for find
+    private Object[][] chunks = new Object[0][]; // entity in each slot, null once deleted
+    private int[] chunkEpochs = new int[0]; // epoch each chunk was made in
+    private int[] chunkLive = new int[0]; // entities in each chunk
+    private int end; // slots used so far
+    private int live; // slots holding an entity
+    private int epoch; // bumped by each snapshot and list view; chunks made before it are shared with it
+    private int listEpoch; // chunks made before this epoch are shared with list views
+    private long changes; // adds and removes ever made, for snapshot versions
+    private final AtomicInteger openSnapshots = new AtomicInteger();
+    private final List<ForeignKeyIndex<T>> indexes;
+    private SearchIndex<T> searchIndex;
+    private volatile List<T> listView; // rebuilt lazily after a change
+    private final Object listViewLock = new Object(); // readers building the list view take turns
+    private final LinkedHashSet<String> unsaved = new LinkedHashSet<>(); // IDs changed since the last save
+    private final StampedLock lock = new StampedLock(); // guards all of the above but the schema
+
+    EntityStore(CsvSchema<T> schema) {
+        this.schema = schema;
+        this.keyOf = schema::keyOf;
+        this.indexes = new ArrayList<>();
+    }
+
+    CsvSchema<T> getSchema() {
+        return schema;
+    }
+
+    /**
+     * Register a secondary index on a foreign key field.
+     * Must be called before any entities are added.
+     */
+    ForeignKeyIndex<T> index(Function<T, String> foreignKeyOf) {
+        ForeignKeyIndex<T> index = new ForeignKeyIndex<>(foreignKeyOf, keyOf);
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Register the text fields that search looks up by prefix.
+     * Must be called before any entities are added.
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is copied into an immutable list
+    final void searchOn(Function<T, String>... fields) {
+        searchIndex = new SearchIndex<>(List.of(fields), keyOf, this::listLocked);
+    }
+
+    /**
+     * IDs of the entities with a search field, or a word of one, starting with the text
+     * (ignoring case), or null while the search index is being built
+     * @throws IllegalStateException if no search fields were registered
+     */
+    Set<String> search(String text) {
+        if (searchIndex == null) {
+            throw new IllegalStateException("No search fields for " + schema.getName());
+        }
+        long stamp = lock.readLock();
+        try {
+            return searchIndex.search(text);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Entities referencing the key in one of this store's foreign-key indexes
+     */
+    List<T> lookup(ForeignKeyIndex<T> index, String foreignKey) {
+        long stamp = lock.readLock();
+        try {
+            return index.lookup(foreignKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Add an entity. An entity with the same ID is replaced in place.
+     * @return the replaced entity, or null if the ID was new
+     */
+    T add(T entity) {
+        long stamp = lock.writeLock();
+        try {
+            return addLocked(entity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Add several entities under one lock, e.g. while loading
+     */
+    void addAll(Collection<T> entities) {
+        long stamp = lock.writeLock();
+        try {
+            for (T entity : entities) {
+                addLocked(entity);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private T addLocked(T entity) {
+        String id = keyOf.apply(entity);
+        Integer slot = slotOf.get(id);
+        T previous = null;
+        if (slot == null) {
+            slot = end++;
+            slotOf.put(id, slot);
+            live++;
+        } else {
+            previous = at(chunks, slot);
+        }
+        setSlot(slot, entity);
+        changes++;
+        for (ForeignKeyIndex<T> index : indexes) {
+            if (previous != null) {
+                index.remove(previous);
+            }
+            index.add(entity);
+        }
+        if (searchIndex != null) {
+            if (previous != null) {
+                searchIndex.remove(previous);
+            }
+            searchIndex.add(entity);
+        }
+        listView = null;
+        return previous;
+    }
+
+    T find(String id) {
+        if (id == null) {
+            return null;
+        }
+        // slotOf is safe to read during a change; the chunks are read into locals and
+        // checked against their bounds, and only used if nothing changed meanwhile
+        long stamp = lock.tryOptimisticRead();
+        Integer slot = slotOf.get(id);
+        Object[][] current = chunks;
+        Object found = slot == null ? null : entry(current, slot);
+        if (lock.validate(stamp)) {
+            return cast(found);
+        }
+        stamp = lock.readLock();
+        try {
+            return findLocked(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private T findLocked(String id) {
+        Integer slot = slotOf.get(id);
+        return slot == null ? null : at(chunks, slot);
+    }
+
+    /**
+     * The entity in a slot, or null if the chunks do not reach it yet
+     */
+    private static Object entry(Object[][] chunks, int slot) {
+        int chunk = slot >>> CHUNK_SHIFT;
+        if (chunk >= chunks.length || chunks[chunk] == null) {
+            return null;
+        }
+        return chunks[chunk][slot & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Replace the entity with an ID by another in one step. An entity with a different ID
+     * takes the old one's place at the end of the order, and only if its ID is free.
+     * @return the replaced entity, or null if there is no entity with the ID or the new ID is taken
+     */
+    T replace(String id, T entity) {
+        long stamp = lock.writeLock();
+        try {
+            T current = findLocked(id);
+            String newId = keyOf.apply(entity);
+            if (current == null || (!id.equals(newId) && slotOf.containsKey(newId))) {
+                return null;
+            }
+            if (!id.equals(newId)) {
+                removeLocked(id);
+            }
+            addLocked(entity);
+            return current;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean delete(String id) {
+        return remove(id) != null;
+    }
+
+    /**
+     * Delete an entity
+     * @return the deleted entity, or null if there was none with this ID
+     */
+    T remove(String id) {
+        if (id == null) {
+            return null;
+        }
+        long stamp = lock.writeLock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private T removeLocked(String id) {
+        Integer slot = slotOf.remove(id);
+        if (slot == null) {
+            return null;
+        }
+        T removed = at(chunks, slot);
+        setSlot(slot, null);
+        live--;
+        changes++;
+        if (end - live > Math.max(CHUNK_SIZE, live / 4)) {
+            compact();
+        }
+        for (ForeignKeyIndex<T> index : indexes) {
+            index.remove(removed);
+        }
+        if (searchIndex != null) {
+            searchIndex.remove(removed);
+        }
+        listView = null;
+        return removed;
+    }
+
+    /**
+     * Remove every entity, e.g. before loading a different data directory
+     */
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            slotOf.clear();
+            chunks = new Object[0][];
+            chunkEpochs = new int[0];
+            chunkLive = new int[0];
+            end = 0;
+            live = 0;
+            changes++;
+            for (ForeignKeyIndex<T> index : indexes) {
+                index.clear();
+            }
+            if (searchIndex != null) {
+                searchIndex.clear();
+            }
+            unsaved.clear();
+            listView = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remember that an entity was added, replaced or deleted since the last save
+     */
+    void markUnsaved(String id) {
+        long stamp = lock.writeLock();
+        try {
+            unsaved.add(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void markUnsaved(Collection<String> ids) {
+        long stamp = lock.writeLock();
+        try {
+            unsaved.addAll(ids);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean isUnsaved(String id) {
+        long stamp = lock.readLock();
+        try {
+            return unsaved.contains(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean hasUnsaved() {
+        long stamp = lock.readLock();
+        try {
+            return !unsaved.isEmpty();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * IDs changed since the last save, in the order they were first changed; clears the set
+     */
+    List<String> takeUnsaved() {
+        long stamp = lock.writeLock();
+        try {
+            List<String> ids = new ArrayList<>(unsaved);
+            unsaved.clear();
+            return ids;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = live;
+        if (lock.validate(stamp)) {
+            return size;
+        }
+        stamp = lock.readLock();
+        try {
+            return live;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Read-only list of all entities in insertion order
+     */
+    List<T> list() {
+        List<T> view = listView;
+        if (view != null) {
+            return view;
+        }
+        long stamp = lock.readLock();
+        try {
+            return listLocked();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * list() for a caller already holding the lock
+     */
+    private List<T> listLocked() {
+        List<T> view = listView;
+        if (view == null) {
+            synchronized (listViewLock) {
+                view = listView;
+                if (view == null) {
+                    view = new ChunkList<>(Arrays.copyOf(chunks, chunks.length),
+                            Arrays.copyOf(chunkLive, chunks.length), end, live);
+                    listEpoch = ++epoch; // every chunk there is now is shared with the view
+                    listView = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Put an entity, or null, in a slot, first copying its chunk if a snapshot shares it
+     */
+    private void setSlot(int slot, T entity) {
+        int chunk = slot >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+            chunkEpochs = Arrays.copyOf(chunkEpochs, chunks.length);
+            chunkLive = Arrays.copyOf(chunkLive, chunks.length);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Object[CHUNK_SIZE];
+            chunkEpochs[chunk] = epoch;
+        } else if (chunkEpochs[chunk] != epoch && (openSnapshots.get() > 0 || chunkEpochs[chunk] < listEpoch)) {
+            chunks[chunk] = chunks[chunk].clone();
+            chunkEpochs[chunk] = epoch;
+        }
+        int index = slot & (CHUNK_SIZE - 1);
+        if (chunks[chunk][index] == null) {
+            chunkLive[chunk] += entity == null ? 0 : 1;
+        } else if (entity == null) {
+            chunkLive[chunk]--;
+        }
+        chunks[chunk][index] = entity;
+    }
+
+    /**
+     * Move the entities into fresh chunks without the empty slots. Snapshots keep the old chunks.
+     */
+    private void compact() {
+        List<T> entities = entities(chunks, end, live);
+        chunks = new Object[0][];
+        chunkEpochs = new int[0];
+        chunkLive = new int[0];
+        end = 0;
+        for (T entity : entities) {
+            int slot = end++;
+            slotOf.put(keyOf.apply(entity), slot);
+            setSlot(slot, entity);
+        }
+    }
+
+    static <T> T at(Object[][] chunks, int slot) {
+        return cast(chunks[slot >>> CHUNK_SHIFT][slot & (CHUNK_SIZE - 1)]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object entity) {
+        return (T) entity;
+    }
+
+    /**
+     * The entities in the first end slots of the chunks, skipping empty slots
+     */
+    static <T> List<T> entities(Object[][] chunks, int end, int live) {
+        List<T> entities = new ArrayList<>(live);
+        for (int slot = 0; slot < end; slot++) {
+            T entity = at(chunks, slot);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Hold off changes to this store, e.g. while snapshots of several stores are taken together
+     * @return the stamp to pass to unlockChanges
+     */
+    long lockChanges() {
+        return lock.writeLock();
+    }
+
+    void unlockChanges(long stamp) {
+        lock.unlockWrite(stamp);
+    }
+
+    /**
+     * The store as it is now; the caller must hold lockChanges
+     */
+    StoreSnapshot<T> snapshotLocked() {
+        openSnapshots.incrementAndGet();
+        StoreSnapshot<T> snapshot = new StoreSnapshot<>(this, Arrays.copyOf(chunks, chunks.length),
+                Arrays.copyOf(chunkLive, chunks.length), end, live, changes);
+        epoch++; // every chunk there is now is shared with the snapshot
+        return snapshot;
+    }
+
+    /**
+     * Called once when a snapshot of this store is closed
+     */
+    void snapshotClosed() {
+        openSnapshots.decrementAndGet();
+    }
+
+    Function<T, String> getKeyOf() {
+        return keyOf;
+    }
+}
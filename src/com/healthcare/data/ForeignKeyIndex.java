@@ -0,0 +1,60 @@
+package com.healthcare.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Secondary index from a foreign key (e.g. patient ID) to the entities that reference it.
+ * Maintained by the owning EntityStore on every add and delete.
+ */
+class ForeignKeyIndex<T> {
+    private final Function<T, String> foreignKeyOf;
+    private final Function<T, String> primaryKeyOf;
+    private final Map<String, Map<String, T>> byForeignKey;
+
+    ForeignKeyIndex(Function<T, String> foreignKeyOf, Function<T, String> primaryKeyOf) {
+        this.foreignKeyOf = foreignKeyOf;
+        this.primaryKeyOf = primaryKeyOf;
+        this.byForeignKey = new HashMap<>();
+    }
+
+    void add(T entity) {
+        String foreignKey = foreignKeyOf.apply(entity);
+        if (foreignKey == null || foreignKey.isEmpty()) {
+            return;
+        }
+        byForeignKey.computeIfAbsent(foreignKey, k -> new LinkedHashMap<>())
+                .put(primaryKeyOf.apply(entity), entity);
+    }
+
+    void remove(T entity) {
+        String foreignKey = foreignKeyOf.apply(entity);
+        Map<String, T> bucket = foreignKey == null ? null : byForeignKey.get(foreignKey);
+        if (bucket != null) {
+            bucket.remove(primaryKeyOf.apply(entity));
+            if (bucket.isEmpty()) {
+                byForeignKey.remove(foreignKey);
+            }
+        }
+    }
+
+    void clear() {
+        byForeignKey.clear();
+    }
+
+    /**
+     * Entities referencing the given key, in insertion order
+     */
+    List<T> lookup(String foreignKey) {
+        Map<String, T> bucket = foreignKey == null ? null : byForeignKey.get(foreignKey);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(bucket.values());
+    }
+}
@@ -0,0 +1,29 @@
+package com.healthcare.data;
+
+/**
+ * Follows the progress of DataManager.loadAllData
+ */
+public interface LoadListener {
+
+    /**
+     * Loading has started
+     * @param totalBytes combined size of the CSV files to parse, or 0 when loading from the snapshot
+     */
+    default void loadStarted(long totalBytes) {
+    }
+
+    /**
+     * Parsing of a file has advanced. Called from loader threads every few thousand rows.
+     * @param bytesRead bytes of this file parsed so far, where known
+     * @param rows rows of this file parsed so far
+     */
+    default void fileProgress(String fileName, long bytesRead, int rows) {
+    }
+
+    /**
+     * All rows of one entity type are now in the DataManager.
+     * Called on the executor passed to loadAllData.
+     */
+    default void entityLoaded(Class<?> entityType, int rows) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.healthcare.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of a DataManager.loadAllData run
+ * Records row counts and timings for each CSV file
+ */
+public class LoadReport {
+
+    /**
+     * Result of loading a single CSV file
+     */
+    public static class FileStats {
+        private final String fileName;
+        private final int rows;
+        private final long millis;
+        private final String error;
+
+        FileStats(String fileName, int rows, long millis, String error) {
+            this.fileName = fileName;
+            this.rows = rows;
+            this.millis = millis;
+            this.error = error;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Error message, or null if the file loaded cleanly
+         */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            String result = fileName + ": " + rows + " rows in " + millis + " ms";
+            return error == null ? result : result + " (error: " + error + ")";
+        }
+    }
+
+    private final List<FileStats> files = new ArrayList<>();
+    private long totalMillis;
+    private boolean fromSnapshot;
+    private int replayedChanges;
+    private boolean cancelled;
+    private long sharedValueBytes;
+
+    synchronized void record(String fileName, int rows, long millis, String error) {
+        files.add(new FileStats(fileName, rows, millis, error));
+    }
+
+    synchronized void clear() {
+        files.clear();
+    }
+
+    void setFromSnapshot(boolean fromSnapshot) {
+        this.fromSnapshot = fromSnapshot;
+    }
+
+    void setReplayedChanges(int replayedChanges) {
+        this.replayedChanges = replayedChanges;
+    }
+
+    void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    void setSharedValueBytes(long sharedValueBytes) {
+        this.sharedValueBytes = sharedValueBytes;
+    }
+
+    void setTotalMillis(long totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * Per-file results, in the order the files finished loading
+     */
+    public synchronized List<FileStats> getFiles() {
+        return new ArrayList<>(files);
+    }
+
+    public synchronized int getTotalRows() {
+        int total = 0;
+        for (FileStats stats : files) {
+            total += stats.getRows();
+        }
+        return total;
+    }
+
+    /**
+     * True if the data came from the binary snapshot rather than the CSV files
+     */
+    public boolean isFromSnapshot() {
+        return fromSnapshot;
+    }
+
+    /**
+     * Number of logged changes replayed on top of the loaded data
+     */
+    public int getReplayedChanges() {
+        return replayedChanges;
+    }
+
+    /**
+     * True if loading was cancelled before every file was loaded
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * Estimated heap this load saved by sharing repeated values of low-cardinality columns,
+     * such as statuses and facility IDs, instead of keeping a copy per row. Counts only the
+     * duplicates this load's own dictionaries dropped, so it is small when loading from a
+     * snapshot, whose reader already shares repeated values within each block.
+     */
+    public long getSharedValueBytes() {
+        return sharedValueBytes;
+    }
+
+    public synchronized boolean hasErrors() {
+        for (FileStats stats : files) {
+            if (stats.getError() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Loaded ").append(getTotalRows()).append(" rows in ").append(totalMillis).append(" ms");
+        sb.append(fromSnapshot ? " from snapshot" : "");
+        sb.append(cancelled ? " (cancelled)" : "");
+        sb.append(replayedChanges > 0 ? ", replayed " + replayedChanges + " logged changes" : "");
+        sb.append(sharedValueBytes >= 1024 ? ", shared repeated values saved about "
+                + sharedValueBytes / 1024 + " KB\n" : "\n");
+        for (FileStats stats : files) {
+            sb.append("  ").append(stats).append("\n");
+        }
+        return sb.toString();
+    }
+}
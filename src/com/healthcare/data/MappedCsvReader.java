@@ -0,0 +1,122 @@
+package com.healthcare.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV files through memory-mapped byte buffers.
+ * Records are found by scanning the mapped UTF-8 bytes directly, so the file is never
+ * decoded as a whole; only the fields a mapper reads are turned into Strings.
+ */
+class MappedCsvReader {
+    // Largest region mapped at once; a single mapping is limited to 2 GB
+    static final long MAX_MAPPING_SIZE = 1L << 30;
+    private static final int HEADER_BUFFER_SIZE = 8 * 1024;
+
+    private MappedCsvReader() {
+    }
+
+    /**
+     * Read every record after the header on the calling thread. The file is mapped in
+     * windows of up to MAX_MAPPING_SIZE bytes, each ending after the last complete record in it.
+     */
+    static <T> List<T> read(String filePath, RowMapper<T> mapper, ReadProgress progress) throws IOException {
+        Path path = Paths.get(filePath);
+        List<T> rows = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = headerEnd(channel, size);
+            while (start < size) {
+                long end = Math.min(size, start + MAX_MAPPING_SIZE);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                int read = readRecords(window, end == size, mapper, rows, progress);
+                if (read == 0) {
+                    throw new IOException("Record at byte " + start + " of " + path.getFileName()
+                            + " is longer than " + MAX_MAPPING_SIZE + " bytes");
+                }
+                start += read;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Map the byte range [start, end) of a file and read the records in it.
+     * The range must start and end on record boundaries.
+     */
+    static <T> List<T> readRange(Path path, long start, long end, RowMapper<T> mapper, ReadProgress progress)
+            throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+        List<T> rows = new ArrayList<>();
+        readRecords(buffer, true, mapper, rows, progress);
+        return rows;
+    }
+
+    /**
+     * Offset just past the header record, reading only as far as its line break: a '\n',
+     * a '\r', or both, outside quotes, the same record ends Utf8CsvTokenizer uses
+     */
+    static long headerEnd(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BUFFER_SIZE);
+        boolean inQuotes = false;
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if ((b == '\n' || b == '\r') && !inQuotes) {
+                    // A '\n' after a '\r' left in the next read is skipped as a blank record
+                    boolean crlf = b == '\r' && i + 1 < read && buffer.get(i + 1) == '\n';
+                    return position + i + (crlf ? 2 : 1);
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Read the records in a buffer into rows. Unless the buffer runs to the end of the
+     * file, a last record without a line break is left for the next window.
+     * @return number of bytes consumed
+     */
+    private static <T> int readRecords(ByteBuffer buffer, boolean toEndOfFile, RowMapper<T> mapper, List<T> rows,
+                                       ReadProgress progress) throws IOException {
+        Utf8CsvTokenizer tokenizer = new Utf8CsvTokenizer(buffer);
+        int reported = rows.size();
+        int reportedBytes = 0;
+        while (tokenizer.next()) {
+            if (!toEndOfFile && tokenizer.completePosition() < tokenizer.position()) {
+                break; // cut off by the end of the window
+            }
+            T row = mapper.map(tokenizer);
+            if (row != null) {
+                rows.add(row);
+            }
+            if (rows.size() - reported >= ReadProgress.REPORT_ROWS) {
+                progress.advance(tokenizer.position() - reportedBytes, rows.size() - reported);
+                reported = rows.size();
+                reportedBytes = tokenizer.position();
+            }
+        }
+        int consumed = toEndOfFile ? buffer.limit() : tokenizer.completePosition();
+        progress.advance(consumed - reportedBytes, rows.size() - reported);
+        return consumed;
+    }
+}
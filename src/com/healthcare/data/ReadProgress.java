@@ -0,0 +1,45 @@
+package com.healthcare.data;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of reading one file, shared by the threads parsing its chunks.
+ * Readers report every REPORT_ROWS rows; each report is also where a
+ * cancelled load stops.
+ */
+class ReadProgress {
+    static final int REPORT_ROWS = 16 * 1024;
+
+    // Progress that goes nowhere and cannot be cancelled
+    static final ReadProgress NONE = new ReadProgress(null, null, new AtomicBoolean());
+
+    private final String fileName;
+    private final LoadListener listener;
+    private final AtomicBoolean cancelled;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger rows = new AtomicInteger();
+
+    ReadProgress(String fileName, LoadListener listener, AtomicBoolean cancelled) {
+        this.fileName = fileName;
+        this.listener = listener;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Record more bytes and rows read
+     * @throws InterruptedIOException if the load has been cancelled
+     */
+    void advance(long moreBytes, int moreRows) throws InterruptedIOException {
+        if (cancelled.get()) {
+            throw new InterruptedIOException("Loading cancelled");
+        }
+        long totalBytes = bytes.addAndGet(moreBytes);
+        int totalRows = rows.addAndGet(moreRows);
+        if (listener != null) {
+            listener.fileProgress(fileName, totalBytes, totalRows);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.healthcare.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes applied to one entity type when its CSV file was reloaded
+ */
+public class ReloadResult {
+    private final String entity;
+    private final String fileName;
+    private final List<String> inserted = new ArrayList<>();
+    private final List<String> updated = new ArrayList<>();
+    private final List<String> deleted = new ArrayList<>();
+    private int skipped;
+
+    ReloadResult(String entity, String fileName) {
+        this.entity = entity;
+        this.fileName = fileName;
+    }
+
+    void inserted(String id) {
+        inserted.add(id);
+    }
+
+    void updated(String id) {
+        updated.add(id);
+    }
+
+    void deleted(String id) {
+        deleted.add(id);
+    }
+
+    void skipped() {
+        skipped++;
+    }
+
+    /**
+     * Entity type name, e.g. "patients"
+     */
+    public String getEntity() {
+        return entity;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public List<String> getInserted() {
+        return Collections.unmodifiableList(inserted);
+    }
+
+    public List<String> getUpdated() {
+        return Collections.unmodifiableList(updated);
+    }
+
+    public List<String> getDeleted() {
+        return Collections.unmodifiableList(deleted);
+    }
+
+    /**
+     * Number of changed rows left alone because they have unsaved local changes, or
+     * changed again while the file was being read
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public boolean hasChanges() {
+        return !inserted.isEmpty() || !updated.isEmpty() || !deleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        String result = fileName + ": " + inserted.size() + " inserted, " + updated.size() + " updated, "
+                + deleted.size() + " deleted";
+        return skipped == 0 ? result : result + ", " + skipped + " unsaved rows kept";
+    }
+}
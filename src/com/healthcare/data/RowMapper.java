@@ -0,0 +1,9 @@
+package com.healthcare.data;
+
+/**
+ * Maps a parsed CSV row to an entity, or to null to skip the row
+ */
+@FunctionalInterface
+interface RowMapper<T> {
+    T map(CsvRow row);
+}
@@ -0,0 +1,264 @@
+package com.healthcare.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Case-insensitive prefix index over a few text fields of an entity (IDs, names, NHS numbers).
+ * Each field is indexed as a whole and word by word, so "smi", "john" and "birmingham c"
+ * all find values by their start.
+ *
+ * The index is built on first use rather than while loading: the entities are listed on
+ * the owning thread and their terms sorted into arrays on a background thread, and until
+ * the arrays are ready search returns null. Changes made after the listing are kept in a
+ * small sorted map on top, with the keys of changed entities hiding their stale array
+ * entries. Once too many have piled up, or the store is cleared, the index is dropped
+ * and rebuilt on the next search.
+ *
+ * The owning EntityStore makes changes under its write lock and searches under its read
+ * lock, so searches may run together but never alongside a change.
+ */
+class SearchIndex<T> {
+    private static final ExecutorService BUILDER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Function<T, String>> fields;
+    private final Function<T, String> primaryKeyOf;
+    private final Supplier<List<T>> entities;
+
+    // Terms sorted into arrays by the background build; null until it is done
+    private volatile Sorted sorted;
+    private boolean active; // entities have been listed for a build and changes are tracked
+    private int generation; // bumped when the index is dropped, so an older build is discarded
+
+    // Changes since the entities were listed
+    private final NavigableMap<String, Object> added = new TreeMap<>(); // term -> key, or Set of keys
+    private final Set<String> changedKeys = new HashSet<>(); // keys whose sorted entries are stale
+
+    private static class Sorted {
+        final String[] terms;
+        final String[] keys;
+
+        Sorted(String[] terms, String[] keys) {
+            this.terms = terms;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * @param entities lists all entities of the store; called on the owning thread
+     */
+    SearchIndex(List<Function<T, String>> fields, Function<T, String> primaryKeyOf, Supplier<List<T>> entities) {
+        this.fields = fields;
+        this.primaryKeyOf = primaryKeyOf;
+        this.entities = entities;
+    }
+
+    void add(T entity) {
+        if (!active) {
+            return;
+        }
+        String key = primaryKeyOf.apply(entity);
+        changedKeys.add(key);
+        for (String term : termsOf(entity)) {
+            added.merge(term, key, SearchIndex::join);
+        }
+        dropIfStale();
+    }
+
+    void remove(T entity) {
+        if (!active) {
+            return;
+        }
+        String key = primaryKeyOf.apply(entity);
+        changedKeys.add(key);
+        for (String term : termsOf(entity)) {
+            added.computeIfPresent(term, (t, keys) -> without(keys, key));
+        }
+        dropIfStale();
+    }
+
+    void clear() {
+        drop();
+    }
+
+    /**
+     * Primary keys of the entities with a field, or a word of a field, starting with the text,
+     * or null while the index is being built
+     */
+    Set<String> search(String text) {
+        Sorted current = sorted;
+        if (current == null) {
+            startBuild();
+            return null;
+        }
+        Set<String> keys = new HashSet<>();
+        String prefix = normalize(text);
+        if (prefix.isEmpty()) {
+            return keys;
+        }
+        for (int i = firstAtLeast(current.terms, prefix);
+             i < current.terms.length && current.terms[i].startsWith(prefix); i++) {
+            if (!changedKeys.contains(current.keys[i])) {
+                keys.add(current.keys[i]);
+            }
+        }
+        for (Object match : added.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (match instanceof String) {
+                keys.add((String) match);
+            } else {
+                keys.addAll(castKeys(match));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Index of the first term not less than the prefix; unlike Arrays.binarySearch this
+     * finds the first of several equal terms
+     */
+    private static int firstAtLeast(String[] terms, String prefix) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (terms[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private synchronized void startBuild() {
+        if (active) {
+            return;
+        }
+        active = true;
+        int buildGeneration = generation;
+        List<T> snapshot = entities.get();
+        BUILDER.execute(() -> {
+            Sorted built = build(snapshot);
+            synchronized (this) {
+                if (generation == buildGeneration) {
+                    sorted = built;
+                }
+            }
+        });
+    }
+
+    private Sorted build(List<T> snapshot) {
+        List<String[]> pairs = new ArrayList<>(snapshot.size() * (fields.size() + 1));
+        for (T entity : snapshot) {
+            String key = primaryKeyOf.apply(entity);
+            for (String term : termsOf(entity)) {
+                pairs.add(new String[]{term, key});
+            }
+        }
+        pairs.sort(Comparator.comparing((String[] pair) -> pair[0]));
+        String[] terms = new String[pairs.size()];
+        String[] keys = new String[pairs.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = pairs.get(i)[0];
+            keys[i] = pairs.get(i)[1];
+        }
+        return new Sorted(terms, keys);
+    }
+
+    /**
+     * Drop the index once the changes on top of it cost more than a rebuild would
+     */
+    private void dropIfStale() {
+        Sorted current = sorted;
+        if (current != null && changedKeys.size() > 1024 + current.keys.length / 8) {
+            drop();
+        }
+    }
+
+    private synchronized void drop() {
+        generation++;
+        sorted = null;
+        active = false;
+        added.clear();
+        changedKeys.clear();
+    }
+
+    /**
+     * Each field value, and each word of a value with several, without duplicates
+     */
+    private List<String> termsOf(T entity) {
+        List<String> terms = new ArrayList<>(fields.size() + 2);
+        for (Function<T, String> field : fields) {
+            String value = normalize(field.apply(entity));
+            if (value.isEmpty()) {
+                continue;
+            }
+            addTerm(terms, value);
+            int start = -1;
+            for (int i = 0; i <= value.length(); i++) {
+                boolean space = i == value.length() || Character.isWhitespace(value.charAt(i));
+                if (!space && start < 0) {
+                    start = i;
+                } else if (space && start >= 0) {
+                    if (start > 0 || i < value.length()) {
+                        addTerm(terms, value.substring(start, i));
+                    }
+                    start = -1;
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String term) {
+        if (!terms.contains(term)) {
+            terms.add(term);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Object join(Object keys, Object key) {
+        if (keys instanceof String) {
+            if (keys.equals(key)) {
+                return keys;
+            }
+            Set<String> set = new HashSet<>(4);
+            set.add((String) keys);
+            set.add((String) key);
+            return set;
+        }
+        castKeys(keys).add((String) key);
+        return keys;
+    }
+
+    private static Object without(Object keys, String key) {
+        if (keys instanceof String) {
+            return keys.equals(key) ? null : keys;
+        }
+        Set<String> set = castKeys(keys);
+        set.remove(key);
+        return set.size() == 1 ? set.iterator().next() : set;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> castKeys(Object keys) {
+        return (Set<String>) keys;
+    }
+}
@@ -0,0 +1,35 @@
+package com.healthcare.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The column dictionaries of one load. Entities mapped through it share the values of
+ * their schema's low-cardinality columns, and the dictionaries go away with the load, so
+ * neither a later load nor another DataManager keeps them alive or counts their savings.
+ */
+class SharedValues {
+    private final Map<String, ColumnDictionary[]> bySchema = new ConcurrentHashMap<>();
+
+    /**
+     * Maps rows of the schema to entities through this load's dictionaries for it
+     */
+    <T> RowMapper<T> mapper(CsvSchema<T> schema) {
+        ColumnDictionary[] dictionaries = bySchema.computeIfAbsent(schema.getName(),
+                name -> schema.newDictionaries());
+        return row -> schema.fromRow(row, dictionaries);
+    }
+
+    /**
+     * Estimated heap saved by this load's dictionaries
+     */
+    long getSavedBytes() {
+        long saved = 0;
+        for (ColumnDictionary[] dictionaries : bySchema.values()) {
+            for (ColumnDictionary dictionary : dictionaries) {
+                saved += dictionary == null ? 0 : dictionary.getSavedBytes();
+            }
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,159 @@
+package com.healthcare.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a snapshot written by SnapshotWriter.
+ * Row blocks are memory-mapped and checked against their CRC32 before decoding.
+ * Repeated values within a block decode to the same String instance.
+ * Sections must be read in the order they were written.
+ */
+class SnapshotReader implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(16);
+    private long position;
+    private byte[] scratch = new byte[256];
+    private final List<String> blockStrings = new ArrayList<>(); // distinct strings of the current block
+    private final Map<String, String> sources = new LinkedHashMap<>(); // file name -> stamp when read
+
+    SnapshotReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < 16 || readInt(channel.size() - 4) != SnapshotWriter.MAGIC) {
+                throw new IOException("Snapshot is truncated");
+            }
+            if (readInt(0) != SnapshotWriter.MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            int version = readInt(4);
+            if (version != SnapshotWriter.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            position = 12; // skip section count
+            int sourceCount = readInt(position);
+            position += 4;
+            for (int i = 0; i < sourceCount; i++) {
+                String fileName = readHeaderString();
+                sources.put(fileName, readHeaderString());
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The stamp of each file the snapshot was built from, as it was read (see SnapshotWriter)
+     */
+    Map<String, String> getSources() {
+        return sources;
+    }
+
+    /**
+     * @param mapper builds the entities of the schema from the rows
+     */
+    <T> List<T> readSection(CsvSchema<T> schema, RowMapper<T> mapper) throws IOException {
+        String name = readHeaderString();
+        int columnCount = readInt(position);
+        long rowCount = readLong(position + 4);
+        position += 12;
+        if (!schema.getName().equals(name) || columnCount != schema.getColumnCount()) {
+            throw new IOException("Snapshot section " + name + " does not match " + schema.getName());
+        }
+
+        List<T> rows = new ArrayList<>((int) Math.min(rowCount, Integer.MAX_VALUE));
+        String[] fields = new String[columnCount];
+        ArrayRow row = new ArrayRow(fields);
+        while (rows.size() < rowCount) {
+            int byteLength = readInt(position);
+            int blockRows = readInt(position + 4);
+            long checksum = readLong(position + 8);
+            position += 16;
+
+            MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position, byteLength);
+            CRC32 crc = new CRC32();
+            crc.update(block);
+            if (crc.getValue() != checksum) {
+                throw new IOException("Snapshot checksum mismatch in " + name);
+            }
+            block.rewind();
+            blockStrings.clear();
+            for (int r = 0; r < blockRows; r++) {
+                for (int c = 0; c < columnCount; c++) {
+                    fields[c] = readString(block);
+                }
+                T entity = mapper.map(row);
+                if (entity != null) {
+                    rows.add(entity);
+                }
+            }
+            position += byteLength;
+        }
+        return rows;
+    }
+
+    private String readString(ByteBuffer block) {
+        int length = block.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < -1) {
+            return blockStrings.get(-2 - length);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        block.get(scratch, 0, length);
+        String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        blockStrings.add(value);
+        return value;
+    }
+
+    private String readHeaderString() throws IOException {
+        int length = readInt(position);
+        if (length < 0 || length > 1024) {
+            throw new IOException("Corrupt snapshot section header");
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(bytes, position + 4);
+        position += 4 + length;
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    private int readInt(long at) throws IOException {
+        header.clear().limit(4);
+        readFully(header, at);
+        return header.getInt(0);
+    }
+
+    private long readLong(long at) throws IOException {
+        header.clear().limit(8);
+        readFully(header, at);
+        return header.getLong(0);
+    }
+
+    private void readFully(ByteBuffer buffer, long at) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, at + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
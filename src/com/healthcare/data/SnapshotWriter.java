@@ -0,0 +1,159 @@
+package com.healthcare.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a binary snapshot of parsed entity data.
+ *
+ * Layout (all integers big-endian):
+ *   header:  int MAGIC, int VERSION, int sectionCount, int sourceCount,
+ *            then a string file name and a string stamp for each source
+ *   section: string name, int columnCount, long rowCount, then blocks until rowCount rows are read
+ *   block:   int byteLength, int rowCount, long CRC32 of the block bytes, block bytes
+ *   row:     columnCount strings
+ *   string:  int byteLength then UTF-8 bytes, or -1 for null, or -2 - n to repeat
+ *            the n-th distinct string of the same block
+ *   trailer: int MAGIC
+ *
+ * The file is written next to its target and renamed into place on commit, so a
+ * reader never sees a half-written snapshot.
+ */
+class SnapshotWriter implements Closeable {
+    static final int MAGIC = 0x484D5353; // "HMSS"
+    static final int VERSION = 2;
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private final Path target;
+    private final Path temp;
+    private final DataOutputStream out;
+    private final BlockBuffer block = new BlockBuffer();
+    private final DataOutputStream blockOut = new DataOutputStream(block);
+    private final Map<String, Integer> blockStrings = new HashMap<>();
+    private boolean committed;
+
+    /**
+     * @param sources the stamp (size and modification time) of each file the data was read
+     *                from, as it was read, so a reader can tell whether the snapshot is still current
+     */
+    SnapshotWriter(Path target, int sectionCount, Map<String, String> sources) throws IOException {
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sectionCount);
+        out.writeInt(sources.size());
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            writeString(out, source.getKey());
+            writeString(out, source.getValue());
+        }
+    }
+
+    <T> void writeSection(CsvSchema<T> schema, List<T> rows) throws IOException {
+        writeString(out, schema.getName());
+        out.writeInt(schema.getColumnCount());
+        out.writeLong(rows.size());
+
+        int rowsInBlock = 0;
+        for (T entity : rows) {
+            for (String value : schema.toRow(entity)) {
+                writeValue(value);
+            }
+            rowsInBlock++;
+            if (block.size() >= BLOCK_SIZE) {
+                flushBlock(rowsInBlock);
+                rowsInBlock = 0;
+            }
+        }
+        if (rowsInBlock > 0) {
+            flushBlock(rowsInBlock);
+        }
+    }
+
+    private void flushBlock(int rowCount) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(block.buffer(), 0, block.size());
+        out.writeInt(block.size());
+        out.writeInt(rowCount);
+        out.writeLong(crc.getValue());
+        out.write(block.buffer(), 0, block.size());
+        block.reset();
+        blockStrings.clear();
+    }
+
+    /**
+     * Write a row value, repeating earlier values of the block by reference
+     */
+    private void writeValue(String value) throws IOException {
+        if (value != null) {
+            Integer index = blockStrings.get(value);
+            if (index != null) {
+                blockOut.writeInt(-2 - index);
+                return;
+            }
+            blockStrings.put(value, blockStrings.size());
+        }
+        writeString(blockOut, value);
+    }
+
+    private static void writeString(DataOutputStream target, String value) throws IOException {
+        if (value == null) {
+            target.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        target.writeInt(bytes.length);
+        target.write(bytes);
+    }
+
+    /**
+     * Finish the file and atomically replace the target with it
+     */
+    void commit() throws IOException {
+        out.writeInt(MAGIC);
+        out.close();
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    /**
+     * Discard the temporary file unless commit() succeeded
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            out.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * ByteArrayOutputStream that exposes its buffer to avoid a copy per block
+     */
+    private static class BlockBuffer extends ByteArrayOutputStream {
+        BlockBuffer() {
+            super(BLOCK_SIZE + 64 * 1024);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
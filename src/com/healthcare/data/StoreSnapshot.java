@@ -0,0 +1,84 @@
+package com.healthcare.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entity type as it was when a DataSnapshot was taken. Reads the chunks it shares
+ * with the EntityStore without locking; the store copies a chunk before changing it.
+ */
+class StoreSnapshot<T> {
+    private final EntityStore<T> store;
+    private final int live;
+    private final long changes;
+    private final List<T> list;
+    private volatile Object[][] chunks; // null once closed
+    private volatile Map<String, T> byId; // built on first find
+
+    StoreSnapshot(EntityStore<T> store, Object[][] chunks, int[] chunkLive, int end, int live, long changes) {
+        this.store = store;
+        this.chunks = chunks;
+        this.live = live;
+        this.changes = changes;
+        this.list = new ChunkList<T>(chunks, chunkLive, end, live) {
+            @Override
+            Object[][] chunks() {
+                return open();
+            }
+        };
+    }
+
+    long getChanges() {
+        return changes;
+    }
+
+    /**
+     * Read-only list of the entities in insertion order, read straight from the shared chunks
+     */
+    List<T> list() {
+        open();
+        return list;
+    }
+
+    /**
+     * The entity with this ID in the snapshot; the first call indexes them all
+     */
+    T find(String id) {
+        Map<String, T> index = byId;
+        if (index == null) {
+            synchronized (this) {
+                open();
+                index = byId;
+                if (index == null) {
+                    index = new HashMap<>(live * 4 / 3 + 1);
+                    for (T entity : list) {
+                        index.put(store.getKeyOf().apply(entity), entity);
+                    }
+                    byId = index;
+                }
+            }
+        }
+        open();
+        return id == null ? null : index.get(id);
+    }
+
+    /**
+     * Let the store change its chunks in place again; idempotent
+     */
+    synchronized void close() {
+        if (chunks != null) {
+            chunks = null;
+            byId = null;
+            store.snapshotClosed();
+        }
+    }
+
+    private Object[][] open() {
+        Object[][] current = chunks;
+        if (current == null) {
+            throw new IllegalStateException("Snapshot of " + store.getSchema().getName() + " is closed");
+        }
+        return current;
+    }
+}
@@ -0,0 +1,191 @@
+package com.healthcare.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CSV tokenizer working directly on UTF-8 bytes, typically a memory-mapped file region.
+ * Follows the same rules as CsvTokenizer; bytes are only decoded to a String when a
+ * field is requested through field(int).
+ */
+class Utf8CsvTokenizer implements CsvRow {
+    private final ByteBuffer bytes;
+    private final int limit;
+    private int recordStart;
+    private int recordLength;
+    private int complete; // just past the last record that ended in a line break
+
+    // Field offsets relative to recordStart
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int count;
+
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Tokenize bytes from position 0 up to the buffer's limit
+     */
+    Utf8CsvTokenizer(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.limit = bytes.limit();
+    }
+
+    /**
+     * Advance to the next non-blank record
+     * @return false at end of input
+     */
+    boolean next() {
+        do {
+            recordStart += recordLength;
+            recordLength = 0;
+            if (!scanRecord()) {
+                return false;
+            }
+        } while (isBlank());
+        return true;
+    }
+
+    /**
+     * Offset of the current record
+     */
+    int recordStart() {
+        return recordStart;
+    }
+
+    /**
+     * Offset just past the current record
+     */
+    int position() {
+        return recordStart + recordLength;
+    }
+
+    /**
+     * Offset just past the last record read that ended in a line break; a record cut off
+     * by the end of the buffer may continue beyond it
+     */
+    int completePosition() {
+        return complete;
+    }
+
+    private boolean scanRecord() {
+        count = 0;
+        int position = recordStart;
+        int fieldStart = position;
+        boolean inQuotes = false;
+        boolean fieldQuoted = false;
+
+        while (position < limit) {
+            byte b = bytes.get(position);
+            if (b == '"') {
+                fieldQuoted = true;
+                if (inQuotes && position + 1 < limit && bytes.get(position + 1) == '"') {
+                    position += 2; // escaped quote
+                } else {
+                    inQuotes = !inQuotes;
+                    position++;
+                }
+            } else if (inQuotes) {
+                position++;
+            } else if (b == ',') {
+                addField(fieldStart, position, fieldQuoted);
+                fieldQuoted = false;
+                position++;
+                fieldStart = position;
+            } else if (b == '\n' || b == '\r') {
+                addField(fieldStart, position, fieldQuoted);
+                position++;
+                if (b == '\r' && position < limit && bytes.get(position) == '\n') {
+                    position++;
+                }
+                recordLength = position - recordStart;
+                complete = position;
+                return true;
+            } else {
+                position++;
+            }
+        }
+        if (position == recordStart) {
+            return false;
+        }
+        addField(fieldStart, position, fieldQuoted);
+        recordLength = position - recordStart;
+        return true;
+    }
+
+    private void addField(int start, int end, boolean isQuoted) {
+        if (count == starts.length) {
+            int size = count * 2;
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            quoted = Arrays.copyOf(quoted, size);
+        }
+        starts[count] = start - recordStart;
+        ends[count] = end - recordStart;
+        quoted[count] = isQuoted;
+        count++;
+    }
+
+    private boolean isBlank() {
+        if (count != 1 || quoted[0]) {
+            return false;
+        }
+        for (int i = recordStart + starts[0]; i < recordStart + ends[0]; i++) {
+            if ((bytes.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int fieldCount() {
+        return count;
+    }
+
+    @Override
+    public String field(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + count);
+        }
+        int start = recordStart + starts[index];
+        int end = recordStart + ends[index];
+        if (scratch.length < end - start) {
+            scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        }
+
+        // Copy the field, stripping quotes and unescaping "" if it was quoted
+        int length = 0;
+        if (!quoted[index]) {
+            bytes.get(start, scratch, 0, end - start);
+            length = end - start;
+        } else {
+            boolean inQuotes = false;
+            for (int i = start; i < end; i++) {
+                byte b = bytes.get(i);
+                if (b == '"') {
+                    if (inQuotes && i + 1 < end && bytes.get(i + 1) == '"') {
+                        scratch[length++] = '"';
+                        i++;
+                    } else {
+                        inQuotes = !inQuotes;
+                    }
+                } else {
+                    scratch[length++] = b;
+                }
+            }
+        }
+
+        // Trim ASCII whitespace; UTF-8 continuation bytes are all above 0x7F
+        int from = 0;
+        int to = length;
+        while (from < to && (scratch[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (scratch[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+        return from == to ? "" : new String(scratch, from, to - from, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,299 @@
+package com.healthcare.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes made to the entity stores.
+ *
+ * Callers encode their record and hand it to a single writer thread, which
+ * drains every record queued so far, writes them in one go and forces them to
+ * disk with a single fsync (group commit). The future returned by append()
+ * completes once the record is durable. Only the writer thread writes to the
+ * file once replay is done; truncate() goes through it too, so it empties the log
+ * of exactly the records appended before it.
+ *
+ * Record layout: int payloadLength, int CRC32 of payload, payload.
+ * Payload: byte operation, string entity name, int fieldCount, fieldCount strings
+ * (string = int byteLength or -1 for null, then UTF-8 bytes).
+ */
+class WriteAheadLog implements Closeable {
+    static final byte ADD = 1;
+    static final byte DELETE = 2;
+
+    private static final int MAX_BATCH = 1024;
+    private static final Pending SHUTDOWN = new Pending(null, false);
+
+    /**
+     * A decoded log record
+     */
+    static class Entry {
+        final byte operation;
+        final String entity;
+        final String[] fields;
+
+        Entry(byte operation, String entity, String[] fields) {
+            this.operation = operation;
+            this.entity = entity;
+            this.fields = fields;
+        }
+    }
+
+    private static class Pending {
+        final ByteBuffer record; // null for SHUTDOWN and truncate
+        final boolean truncate;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(ByteBuffer record, boolean truncate) {
+            this.record = record;
+            this.truncate = truncate;
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private Thread writer; // started by the first append
+    private volatile boolean closed; // set together with queueing SHUTDOWN, under this
+
+    WriteAheadLog(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Read every intact record from the start of the log.
+     * A torn or corrupt tail (e.g. from a crash mid-write) is cut off so new
+     * records are appended after the last good one. Must be called before
+     * the first append.
+     */
+    void replay(Consumer<Entry> consumer) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (position + 8 <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length <= 0 || position + 8 + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + 8);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            consumer.accept(decode(payload));
+            position += 8 + length;
+        }
+        if (position < size) {
+            System.err.println("Discarding " + (size - position) + " bytes of incomplete change log " + path);
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    /**
+     * Queue a record for the next group commit
+     * @return a future that completes once the record has been forced to disk
+     * @throws IllegalStateException if the log has been closed
+     */
+    CompletableFuture<Void> append(byte operation, String entity, String[] fields) {
+        return enqueue(new Pending(encode(operation, entity, fields), false));
+    }
+
+    private synchronized CompletableFuture<Void> enqueue(Pending pending) {
+        if (closed) {
+            throw new IllegalStateException("Change log is closed");
+        }
+        if (writer == null) {
+            writer = new Thread(this::writeLoop, "wal-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        queue.add(pending);
+        return pending.done;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            boolean shutdown = batch.remove(SHUTDOWN);
+            int done = 0; // batch entries before this one are finished
+            boolean truncated = false;
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    Pending pending = batch.get(i);
+                    if (pending.truncate) {
+                        // The records before it are discarded, so they need no fsync
+                        channel.truncate(0);
+                        channel.position(0);
+                        truncated = true;
+                        for (; done <= i; done++) {
+                            batch.get(done).done.complete(null);
+                        }
+                    } else {
+                        while (pending.record.hasRemaining()) {
+                            channel.write(pending.record);
+                        }
+                    }
+                }
+                channel.force(truncated); // the new length is metadata
+                for (; done < batch.size(); done++) {
+                    batch.get(done).done.complete(null);
+                }
+            } catch (IOException e) {
+                for (; done < batch.size(); done++) {
+                    batch.get(done).done.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+            if (shutdown) {
+                // append() queues nothing after SHUTDOWN, but never leave a caller waiting
+                queue.drainTo(batch);
+                IllegalStateException closedError = new IllegalStateException("Change log is closed");
+                batch.forEach(pending -> pending.done.completeExceptionally(closedError));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Discard all records appended before this call, e.g. once their changes have been
+     * written back to the CSV files. Records still queued are written first and then
+     * discarded with the rest; records appended later are kept.
+     */
+    void truncate() throws IOException {
+        CompletableFuture<Void> truncated;
+        try {
+            truncated = enqueue(new Pending(null, true));
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage());
+        }
+        try {
+            truncated.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private static ByteBuffer encode(byte operation, String entity, String[] fields) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0); // length, filled in below
+            out.writeInt(0); // checksum, filled in below
+            out.writeByte(operation);
+            writeString(out, entity);
+            out.writeInt(fields.length);
+            for (String field : fields) {
+                writeString(out, field);
+            }
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            int length = record.capacity() - 8;
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 8, length);
+            record.putInt(0, length);
+            record.putInt(4, (int) crc.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Entry decode(ByteBuffer payload) {
+        payload.rewind();
+        byte operation = payload.get();
+        String entity = readString(payload);
+        String[] fields = new String[payload.getInt()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = readString(payload);
+        }
+        return new Entry(operation, entity, fields);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private void readFully(ByteBuffer buffer, long at) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, at + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of change log");
+            }
+        }
+    }
+
+    /**
+     * Flush queued records and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        Thread running;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = writer;
+            if (running != null) {
+                queue.add(SHUTDOWN);
+            }
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.healthcare.referral;
+
+/**
+ * One rendered email or EHR update kept in an AuditTrail
+ */
+public class AuditRecord {
+    private final long sequence;
+    private final long timestamp;
+    private final String referralID;
+    private final String text;
+
+    AuditRecord(long sequence, long timestamp, String referralID, String text) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.referralID = referralID;
+        this.text = text;
+    }
+
+    /**
+     * Position in the trail, counting from 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * When the record was written, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getReferralID() {
+        return referralID;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
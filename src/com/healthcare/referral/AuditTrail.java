@@ -0,0 +1,436 @@
+package com.healthcare.referral;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * Audit trail of rendered emails or EHR updates.
+ *
+ * Only the most recent records are kept in memory, in a ring of fixed size. Every
+ * record is also appended to an on-disk log once a directory is set. The log is split
+ * into segment files of a few megabytes, named after the sequence number and time of
+ * their first record, so reads by time skip whole segments and old segments can be
+ * deleted once they fall out of the retention period.
+ *
+ * On disk each record is a header line "sequence TAB timestamp TAB referral ID TAB
+ * length" followed by length bytes of UTF-8 text and a newline.
+ */
+public class AuditTrail implements Closeable {
+    private static final int DEFAULT_RING_CAPACITY = 1000;
+    private static final long SEGMENT_BYTES = 4L * 1024 * 1024;
+    private static final long DEFAULT_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(90);
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final String name;
+    private final ArrayDeque<AuditRecord> recent = new ArrayDeque<>();
+    private int ringCapacity = DEFAULT_RING_CAPACITY;
+    private long retentionMillis = DEFAULT_RETENTION_MILLIS;
+    private long nextSequence = 1;
+
+    private File directory; // null: memory only
+    private final List<Segment> segments = new ArrayList<>(); // oldest first
+    private OutputStream out; // appends to the last segment, opened on first write
+    private long outBytes;
+
+    private static class Segment {
+        final File file;
+        final long firstSequence;
+        final long firstTimestamp;
+        volatile ReferralFilter referrals; // null until the segment has been read through once
+
+        Segment(File file, long firstSequence, long firstTimestamp) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            this.firstTimestamp = firstTimestamp;
+        }
+    }
+
+    /**
+     * Bloom filter of the referral IDs in a segment, so a lookup by referral skips the
+     * segments that cannot hold it. 64K bits and three hashes keep false positives to a
+     * few percent for the few thousand records of a full segment.
+     */
+    private static class ReferralFilter {
+        private static final int BITS = 1 << 16;
+        private static final int HASHES = 3;
+        private final AtomicLongArray words = new AtomicLongArray(BITS / 64);
+
+        void add(String referralID) {
+            int hash = referralID.hashCode();
+            int step = step(hash);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (hash + i * step) & (BITS - 1);
+                words.getAndAccumulate(bit >>> 6, 1L << bit, (word, mask) -> word | mask);
+            }
+        }
+
+        boolean mightContain(String referralID) {
+            int hash = referralID.hashCode();
+            int step = step(hash);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (hash + i * step) & (BITS - 1);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int step(int hash) {
+            return (Integer.reverse(hash) * 0x9E3779B9) | 1;
+        }
+    }
+
+    /**
+     * A segment and how much of it to read, fixed while holding the lock so a search
+     * sees a consistent trail without holding up appends
+     */
+    private static class Span {
+        final Segment segment;
+        final long length;
+
+        Span(Segment segment, long length) {
+            this.segment = segment;
+            this.length = length;
+        }
+    }
+
+    /**
+     * @param name kind of record, e.g. "email", used in messages
+     */
+    public AuditTrail(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Keep the log in this directory from now on, continuing any log already there;
+     * null keeps records in memory only
+     */
+    public synchronized void setDirectory(File directory) {
+        closeSegment();
+        segments.clear();
+        this.directory = directory;
+        if (directory == null) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Error creating " + name + " audit directory: " + directory);
+            this.directory = null;
+            return;
+        }
+        File[] files = directory.listFiles((dir, file) -> file.endsWith(SEGMENT_SUFFIX));
+        for (File file : files == null ? new File[0] : files) {
+            String[] parts = file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()).split("-");
+            try {
+                segments.add(new Segment(file, Long.parseLong(parts[0]), Long.parseLong(parts[1])));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("Error reading " + name + " audit log: unexpected file " + file.getName());
+            }
+        }
+        segments.sort((a, b) -> Long.compare(a.firstSequence, b.firstSequence));
+        if (!segments.isEmpty()) {
+            recoverLastSegment();
+        }
+        deleteExpiredSegments();
+    }
+
+    /**
+     * Find the next sequence number from the last segment, cutting off a record that
+     * was only partly written
+     */
+    private void recoverLastSegment() {
+        Segment last = segments.get(segments.size() - 1);
+        long validLength = 0;
+        long lastSequence = last.firstSequence - 1;
+        ReferralFilter referrals = new ReferralFilter();
+        last.referrals = referrals; // appends add to it from now on
+        try (InputStream in = new BufferedInputStream(new FileInputStream(last.file))) {
+            AuditRecord record;
+            long[] position = {0};
+            while ((record = readRecord(in, position)) != null) {
+                lastSequence = record.getSequence();
+                validLength = position[0];
+                referrals.add(record.getReferralID());
+            }
+        } catch (EOFException e) {
+            // torn record at the end: keep everything before it
+        } catch (IOException e) {
+            System.err.println("Error reading " + name + " audit log: " + e.getMessage());
+        }
+        try (RandomAccessFile file = new RandomAccessFile(last.file, "rw")) {
+            if (file.length() > validLength) {
+                file.setLength(validLength);
+            }
+        } catch (IOException e) {
+            System.err.println("Error repairing " + name + " audit log: " + e.getMessage());
+        }
+        nextSequence = Math.max(nextSequence, lastSequence + 1);
+    }
+
+    public synchronized void setRingCapacity(int capacity) {
+        ringCapacity = capacity;
+        while (recent.size() > ringCapacity) {
+            recent.removeFirst();
+        }
+    }
+
+    /**
+     * Delete segments whose records are all older than this (90 days by default)
+     */
+    public synchronized void setRetention(long millis) {
+        retentionMillis = millis;
+        deleteExpiredSegments();
+    }
+
+    /**
+     * Add a record to the ring and, if a directory is set, to the log
+     */
+    public synchronized AuditRecord append(String referralID, String text) {
+        AuditRecord record = new AuditRecord(nextSequence++, System.currentTimeMillis(), referralID, text);
+        if (recent.size() >= ringCapacity) {
+            recent.removeFirst();
+        }
+        recent.addLast(record);
+        if (directory != null) {
+            try {
+                write(record);
+            } catch (IOException e) {
+                System.err.println("Error writing " + name + " audit log: " + e.getMessage());
+                closeSegment();
+            }
+        }
+        return record;
+    }
+
+    private void write(AuditRecord record) throws IOException {
+        if (out != null && outBytes >= SEGMENT_BYTES) {
+            closeSegment();
+        }
+        if (out == null) {
+            if (segments.isEmpty() || segments.get(segments.size() - 1).file.length() >= SEGMENT_BYTES) {
+                Segment segment = new Segment(segmentFile(record), record.getSequence(), record.getTimestamp());
+                segment.referrals = new ReferralFilter();
+                segments.add(segment);
+                deleteExpiredSegments();
+            }
+            File file = segments.get(segments.size() - 1).file;
+            outBytes = file.length();
+            out = new BufferedOutputStream(new FileOutputStream(file, true));
+        }
+        byte[] text = record.getText().getBytes(StandardCharsets.UTF_8);
+        String header = record.getSequence() + "\t" + record.getTimestamp() + "\t"
+                + clean(record.getReferralID()) + "\t" + text.length + "\n";
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        out.write(headerBytes);
+        out.write(text);
+        out.write('\n');
+        out.flush();
+        outBytes += headerBytes.length + text.length + 1;
+        ReferralFilter referrals = segments.get(segments.size() - 1).referrals;
+        if (referrals != null) {
+            referrals.add(clean(record.getReferralID()));
+        }
+    }
+
+    private File segmentFile(AuditRecord first) {
+        return new File(directory, String.format("%020d-%d%s", first.getSequence(), first.getTimestamp(),
+                SEGMENT_SUFFIX));
+    }
+
+    private static String clean(String referralID) {
+        return referralID == null ? "" : referralID.replace('\t', ' ').replace('\n', ' ');
+    }
+
+    private void deleteExpiredSegments() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        // A segment ends where the next one starts; the last one is still being written
+        while (segments.size() > 1 && segments.get(1).firstTimestamp < cutoff) {
+            File file = segments.remove(0).file;
+            if (!file.delete()) {
+                System.err.println("Error deleting expired " + name + " audit segment " + file.getName());
+            }
+        }
+    }
+
+    private void closeSegment() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing " + name + " audit log: " + e.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * The records still held in memory, oldest first
+     */
+    public synchronized List<AuditRecord> getRecent() {
+        return new ArrayList<>(recent);
+    }
+
+    /**
+     * Forget the records held in memory; the on-disk log is kept
+     */
+    public synchronized void clearRecent() {
+        recent.clear();
+    }
+
+    /**
+     * One page of the records written between two times (inclusive), oldest first.
+     * Reads the log without holding up appends.
+     * @param skip number of matching records to skip, for later pages
+     */
+    public List<AuditRecord> findByTime(long fromMillis, long toMillis, int skip, int limit) {
+        List<Span> candidates = new ArrayList<>();
+        List<AuditRecord> inMemory;
+        synchronized (this) {
+            inMemory = directory == null ? new ArrayList<>(recent) : null;
+            for (int i = 0; i < segments.size() && inMemory == null; i++) {
+                boolean endsBefore = i + 1 < segments.size() && segments.get(i + 1).firstTimestamp < fromMillis;
+                if (!endsBefore && segments.get(i).firstTimestamp <= toMillis) {
+                    candidates.add(span(i));
+                }
+            }
+        }
+        return find(inMemory, candidates, null,
+                record -> record.getTimestamp() >= fromMillis && record.getTimestamp() <= toMillis, skip, limit);
+    }
+
+    /**
+     * One page of the records for a referral, oldest first. Reads only the segments that
+     * may hold the referral, without holding up appends.
+     * @param skip number of matching records to skip, for later pages
+     */
+    public List<AuditRecord> findByReferral(String referralID, int skip, int limit) {
+        List<Span> candidates = new ArrayList<>();
+        List<AuditRecord> inMemory;
+        synchronized (this) {
+            inMemory = directory == null ? new ArrayList<>(recent) : null;
+            for (int i = 0; i < segments.size() && inMemory == null; i++) {
+                candidates.add(span(i));
+            }
+        }
+        String cleaned = clean(referralID);
+        return find(inMemory, candidates, cleaned, record -> cleaned.equals(record.getReferralID()), skip, limit);
+    }
+
+    /**
+     * A segment with the length written so far; the last one is still being appended to
+     */
+    private Span span(int index) {
+        Segment segment = segments.get(index);
+        boolean writing = index == segments.size() - 1 && out != null;
+        return new Span(segment, writing ? outBytes : segment.file.length());
+    }
+
+    /**
+     * @param inMemory the records to search when there is no log, or null to read the segments
+     * @param referralID if not null, skip segments whose filter rules this referral out
+     */
+    private List<AuditRecord> find(List<AuditRecord> inMemory, List<Span> candidates, String referralID,
+                                   Predicate<AuditRecord> match, int skip, int limit) {
+        List<AuditRecord> page = new ArrayList<>();
+        if (inMemory != null) {
+            for (AuditRecord record : inMemory) {
+                if (match.test(record) && skip-- <= 0) {
+                    page.add(record);
+                    if (page.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+            return page;
+        }
+        for (Span span : candidates) {
+            Segment segment = span.segment;
+            ReferralFilter known = segment.referrals;
+            if (referralID != null && known != null && !known.mightContain(referralID)) {
+                continue;
+            }
+            if (!segment.file.exists()) {
+                continue; // expired meanwhile
+            }
+            ReferralFilter building = known == null ? new ReferralFilter() : null;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(segment.file))) {
+                AuditRecord record;
+                long[] position = {0};
+                while (position[0] < span.length && (record = readRecord(in, position)) != null) {
+                    if (building != null) {
+                        building.add(record.getReferralID());
+                    }
+                    if (match.test(record) && skip-- <= 0) {
+                        page.add(record);
+                        if (page.size() >= limit) {
+                            return page;
+                        }
+                    }
+                }
+                if (building != null && span.length == segment.file.length()) {
+                    segment.referrals = building; // read through a segment that is no longer written to
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading " + name + " audit log: " + e.getMessage());
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Read the next record, advancing position[0] past it
+     * @return the record, or null at the end of the stream
+     * @throws EOFException if the stream ends inside a record
+     */
+    private static AuditRecord readRecord(InputStream in, long[] position) throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                if (headerBytes.size() == 0) {
+                    return null;
+                }
+                throw new EOFException("Audit record header is incomplete");
+            }
+            headerBytes.write(b);
+        }
+        String[] header = headerBytes.toString(StandardCharsets.UTF_8).split("\t", -1);
+        if (header.length != 4) {
+            throw new IOException("Audit record header is malformed at byte " + position[0]);
+        }
+        try {
+            int length = Integer.parseInt(header[3]);
+            byte[] text = in.readNBytes(length);
+            if (text.length < length || in.read() != '\n') {
+                throw new EOFException("Audit record is incomplete");
+            }
+            position[0] += headerBytes.size() + 1 + length + 1;
+            return new AuditRecord(Long.parseLong(header[0]), Long.parseLong(header[1]), header[2],
+                    new String(text, StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            throw new IOException("Audit record header is malformed at byte " + position[0]);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeSegment();
+    }
+}
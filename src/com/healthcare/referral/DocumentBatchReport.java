@@ -0,0 +1,45 @@
+package com.healthcare.referral;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of writing the documents for a batch of referrals
+ */
+public class DocumentBatchReport {
+    private final int written;
+    private final List<String> errors;
+    private final long nanos;
+
+    DocumentBatchReport(int written, List<String> errors, long nanos) {
+        this.written = written;
+        this.errors = new ArrayList<>(errors);
+        this.nanos = nanos;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    /**
+     * One message per document that could not be written
+     */
+    public List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    public long getMillis() {
+        return nanos / 1_000_000;
+    }
+
+    public double getDocumentsPerSecond() {
+        return nanos == 0 ? 0 : written * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        String result = String.format("Wrote %d referral documents in %d ms (%.0f documents/s)",
+                written, getMillis(), getDocumentsPerSecond());
+        return errors.isEmpty() ? result : result + ", " + errors.size() + " failed";
+    }
+}
@@ -0,0 +1,67 @@
+package com.healthcare.referral;
+
+/**
+ * Running statistics of how long referrals took from being queued to leaving the
+ * last pipeline stage. Percentiles come from a histogram with power-of-two buckets,
+ * so they are accurate to within a factor of two.
+ */
+public class LatencyStats {
+    // Bucket i counts latencies below 2^i microseconds
+    private static final int BUCKETS = 40;
+
+    private final long[] histogram = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    synchronized void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        histogram[bucket]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    synchronized LatencyStats copy() {
+        LatencyStats copy = new LatencyStats();
+        System.arraycopy(histogram, 0, copy.histogram, 0, BUCKETS);
+        copy.count = count;
+        copy.totalNanos = totalNanos;
+        copy.maxNanos = maxNanos;
+        return copy;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    /**
+     * Latency that the given percentage of referrals stayed under, e.g. 95
+     */
+    public synchronized double getPercentileMillis(double percent) {
+        long wanted = (long) Math.ceil(count * percent / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= wanted && seen > 0) {
+                return Math.min((1L << i) / 1000.0, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d referrals, mean %.1f ms, p95 %.1f ms, max %.1f ms",
+                count, getMeanMillis(), getPercentileMillis(95), getMaxMillis());
+    }
+}
@@ -0,0 +1,157 @@
+package com.healthcare.referral;
+
+import com.healthcare.model.Referral;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes referral documents.
+ *
+ * A document is rendered from a ReferralTemplate into a text buffer and a byte buffer that each thread reuses, and
+ * written to its file with one FileChannel write instead of a dozen small FileWriter writes.
+ * write() does this on a small pool of writer threads, so at most that many documents are
+ * written at once and a batch of thousands waits its turn.
+ */
+public class ReferralDocumentWriter {
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+    private volatile ReferralTemplate template = DEFAULT_TEMPLATE;
+
+    static final ReferralTemplate DEFAULT_TEMPLATE = ReferralTemplate.compile(
+            "=== PATIENT REFERRAL ===\n\n"
+            + "Referral ID: {referralID}\n"
+            + "Date: {date}\n"
+            + "Urgency Level: {urgency}\n"
+            + "Status: {status}\n\n"
+            + "PATIENT INFORMATION:\n"
+            + "Patient ID: {patientID}\n\n"
+            + "REFERRING INFORMATION:\n"
+            + "Clinician ID: {referringClinicianID}\n"
+            + "Facility: {referringFacility}\n\n"
+            + "RECEIVING INFORMATION:\n"
+            + "Clinician ID: {receivingClinicianID}\n"
+            + "Facility: {receivingFacility}\n\n"
+            + "CLINICAL SUMMARY:\n"
+            + "{clinicalSummary}\n\n"
+            + "=== END OF REFERRAL ===\n");
+
+    private static class Buffers {
+        final StringBuilder text = new StringBuilder(1024);
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(4096);
+    }
+
+    public ReferralDocumentWriter() {
+        AtomicInteger threads = new AtomicInteger();
+        workers = new ThreadPoolExecutor(DEFAULT_CONCURRENCY, DEFAULT_CONCURRENCY, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "referral-writer-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Set how many documents may be written at once (4 by default)
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("At least one document must be written at a time: " + concurrency);
+        }
+        synchronized (workers) {
+            if (concurrency > workers.getMaximumPoolSize()) {
+                workers.setMaximumPoolSize(concurrency);
+                workers.setCorePoolSize(concurrency);
+            } else {
+                workers.setCorePoolSize(concurrency);
+                workers.setMaximumPoolSize(concurrency);
+            }
+        }
+    }
+
+    public int getConcurrency() {
+        return workers.getMaximumPoolSize();
+    }
+
+    /**
+     * Layout of the documents written from now on
+     */
+    public void setTemplate(ReferralTemplate template) {
+        this.template = template;
+    }
+
+    public ReferralTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Write the referral's document on a writer thread
+     * @return completes with the referral once the file is written, or exceptionally
+     */
+    public CompletableFuture<Referral> write(Referral referral, File file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                writeNow(referral, file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return referral;
+        }, workers);
+    }
+
+    /**
+     * Write the referral's document on the calling thread
+     */
+    public void writeNow(Referral referral, File file) throws IOException {
+        Buffers reused = buffers.get();
+        reused.text.setLength(0);
+        template.render(referral, reused.text);
+        ByteBuffer bytes = encode(reused);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Encode the text buffer into the byte buffer, growing it if the document does not fit
+     */
+    private static ByteBuffer encode(Buffers reused) {
+        CharBuffer chars = CharBuffer.wrap(reused.text);
+        while (true) {
+            reused.bytes.clear();
+            reused.encoder.reset();
+            chars.rewind();
+            CoderResult result = reused.encoder.encode(chars, reused.bytes, true);
+            if (!result.isOverflow()) {
+                result = reused.encoder.flush(reused.bytes);
+            }
+            if (!result.isOverflow()) {
+                reused.bytes.flip();
+                return reused.bytes;
+            }
+            reused.bytes = ByteBuffer.allocate(reused.bytes.capacity() * 2);
+        }
+    }
+}
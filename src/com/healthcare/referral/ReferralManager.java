@@ -2,29 +2,136 @@ package com.healthcare.referral;
 
 import com.healthcare.model.Referral;
 import com.healthcare.data.DataManager;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Singleton pattern implementation for Referral Management
  * Manages referral queues, email communications, and EHR updates
+ *
+ * Queued referrals go through a pipeline of stages (see Stage), each with its own
+ * worker threads and a bounded queue. When a stage's queue is full, whoever hands it
+ * work waits for room, so a burst of referrals slows the submitter down instead of
+ * piling up in memory.
+ *
+ * Each stage takes the most pressing referral first: the one with the earliest
+ * deadline, which is the time it was queued plus the wait allowance for its urgency
+ * (none for "Urgent"). An urgent referral therefore overtakes routine ones, but a
+ * routine referral that has waited out its allowance is taken before urgent referrals
+ * queued after that point, so it cannot starve.
+ *
+ * Queued referrals are also grouped by status, and moved between groups when an update
+ * changes their status, so processQueue only looks at the pending ones however many
+ * have been completed.
  */
 public class ReferralManager {
+    /**
+     * Steps every queued referral goes through, in this order
+     */
+    public enum Stage {
+        INTAKE, EMAIL, EHR, FILE_OUTPUT;
+
+        Stage next() {
+            return ordinal() + 1 < values().length ? values()[ordinal() + 1] : null;
+        }
+    }
+
+    // Referrals waiting in front of one stage before the stage before it has to wait
+    private static final int STAGE_CAPACITY = 1024;
+
+    // Wait allowance of urgency levels without one of their own
+    private static final long DEFAULT_WAIT_ALLOWANCE_MILLIS = 5_000;
+
+    private static final ReferralTemplate DEFAULT_EMAIL_TEMPLATE = ReferralTemplate.compile(
+            "=== REFERRAL EMAIL COMMUNICATION ===\n"
+            + "Date: {today}\n"
+            + "Referral ID: {referralID}\n"
+            + "Patient ID: {patientID}\n"
+            + "From: {referringFacility}\n"
+            + "To: {receivingFacility}\n"
+            + "Urgency: {urgency}\n"
+            + "Clinical Summary: {clinicalSummary}\n"
+            + "Status: {status}\n"
+            + "=====================================\n\n");
+
+    private static final ReferralTemplate DEFAULT_EHR_TEMPLATE = ReferralTemplate.compile(
+            "=== ELECTRONIC HEALTH RECORD UPDATE ===\n"
+            + "Timestamp: {today}\n"
+            + "Referral ID: {referralID}\n"
+            + "Patient ID: {patientID}\n"
+            + "Action: Referral Created/Updated\n"
+            + "Referring Clinician: {referringClinicianID}\n"
+            + "Receiving Clinician: {receivingClinicianID}\n"
+            + "Clinical Summary: {clinicalSummary}\n"
+            + "Audit Trail: Referral processed by system\n"
+            + "========================================\n\n");
+
     private static ReferralManager instance;
-    private List<Referral> referralQueue;
-    private List<String> emailCommunications;
-    private List<String> ehrUpdates;
+    // Guarded by referralQueue
+    private final Map<String, Referral> referralQueue = new LinkedHashMap<>(); // by referral ID, in queuing order
+    private final Map<String, String> queuedStatus = new HashMap<>(); // referral ID -> status it is grouped under
+    private final Map<String, Set<String>> queuedByStatus = new HashMap<>(); // status -> referral IDs
+    private final Map<String, Job> inIntake = new HashMap<>(); // referral ID -> latest job not queued yet
+    private final AuditTrail emailCommunications = new AuditTrail("email");
+    private final AuditTrail ehrUpdates = new AuditTrail("EHR");
+    private final Map<Stage, ThreadPoolExecutor> stages = new EnumMap<>(Stage.class);
+    private volatile File outputDirectory;
+    private final ReferralDocumentWriter documents = new ReferralDocumentWriter();
+    private volatile ReferralTemplate emailTemplate = DEFAULT_EMAIL_TEMPLATE;
+    private volatile ReferralTemplate ehrTemplate = DEFAULT_EHR_TEMPLATE;
+    private final Map<String, Long> waitAllowanceNanos = new ConcurrentHashMap<>(); // by lower-case urgency
+    private final Map<String, LatencyStats> latencyByUrgency = new ConcurrentHashMap<>();
+    private final AtomicLong jobSequence = new AtomicLong();
     private DataManager dataManager;
 
     // Private constructor to prevent instantiation
     private ReferralManager() {
-        referralQueue = new ArrayList<>();
-        emailCommunications = new ArrayList<>();
-        ehrUpdates = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, newStage(stage));
+        }
+        setWaitAllowance("Urgent", 0);
+        setWaitAllowance("Routine", DEFAULT_WAIT_ALLOWANCE_MILLIS);
+        setWaitAllowance("Non-urgent", 30_000);
+    }
+
+    private static ThreadPoolExecutor newStage(Stage stage) {
+        String name = "referral-" + stage.name().toLowerCase(Locale.ROOT).replace('_', '-') + "-";
+        AtomicInteger threads = new AtomicInteger();
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new PriorityStageQueue(STAGE_CAPACITY, Comparator.comparing(task -> (Job) task)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> {
+                    // Full: wait for room rather than drop the referral
+                    try {
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted waiting for the " + stage + " stage", e);
+                    }
+                });
     }
 
     /**
@@ -45,98 +152,303 @@ public class ReferralManager {
     }
 
     /**
-     * Add referral to queue
+     * Set how many threads work on a stage (1 by default)
+     */
+    public void setWorkers(Stage stage, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("A stage needs at least one worker: " + workers);
+        }
+        ThreadPoolExecutor executor = stages.get(stage);
+        synchronized (executor) {
+            if (workers > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(workers);
+                executor.setCorePoolSize(workers);
+            } else {
+                executor.setCorePoolSize(workers);
+                executor.setMaximumPoolSize(workers);
+            }
+        }
+    }
+
+    public int getWorkers(Stage stage) {
+        return stages.get(stage).getMaximumPoolSize();
+    }
+
+    /**
+     * Directory the FILE_OUTPUT stage writes a referral document to for every referral,
+     * or null (the default) to write none
      */
-    public void addToQueue(Referral referral) {
-        referralQueue.add(referral);
-        generateEmailCommunication(referral);
-        generateEHRUpdate(referral);
+    public void setOutputDirectory(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
     }
 
     /**
-     * Process referral queue
+     * How long a referral of this urgency may wait before it is taken ahead of more
+     * urgent referrals queued after it. Urgency levels are matched ignoring case.
      */
-    public void processQueue() {
-        for (Referral referral : referralQueue) {
-            if ("Pending".equals(referral.getStatus())) {
-                processReferral(referral);
-            }
+    public void setWaitAllowance(String urgency, long millis) {
+        waitAllowanceNanos.put(urgencyKey(urgency), TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private long waitAllowanceNanos(String urgency) {
+        Long nanos = waitAllowanceNanos.get(urgencyKey(urgency));
+        return nanos != null ? nanos : TimeUnit.MILLISECONDS.toNanos(DEFAULT_WAIT_ALLOWANCE_MILLIS);
+    }
+
+    private static String urgencyKey(String urgency) {
+        return urgency == null ? "" : urgency.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Time from queuing to leaving the last stage, for each urgency level seen so far
+     */
+    public Map<String, LatencyStats> getLatencyByUrgency() {
+        Map<String, LatencyStats> copy = new TreeMap<>();
+        latencyByUrgency.forEach((urgency, stats) -> copy.put(urgency, stats.copy()));
+        return copy;
+    }
+
+    public void clearLatencyStats() {
+        latencyByUrgency.clear();
+    }
+
+    /**
+     * Add referral to queue. Its email and EHR update are generated, and its document
+     * written, in the background; waits only while the pipeline is full.
+     * @return completes with the referral once every stage is done, or exceptionally
+     * if a stage fails
+     */
+    public CompletableFuture<Referral> addToQueue(Referral referral) {
+        Job job = new Job(referral, Stage.INTAKE);
+        synchronized (referralQueue) {
+            inIntake.put(referral.getReferralID(), job); // so updateQueued reaches it before intake
         }
+        job.submit();
+        return job.done;
     }
 
     /**
-     * Process a single referral
+     * One referral's way through the pipeline, from the stage it entered at
      */
-    private void processReferral(Referral referral) {
-        // Simulate referral processing
-        generateEmailCommunication(referral);
-        generateEHRUpdate(referral);
+    private class Job implements Runnable, Comparable<Job> {
+        Referral referral; // replaced by updateQueued until intake, guarded by referralQueue till then
+        final CompletableFuture<Referral> done = new CompletableFuture<>();
+        final long queuedNanos = System.nanoTime();
+        final long deadlineNanos;
+        final long sequence = jobSequence.incrementAndGet();
+        Stage stage;
+
+        Job(Referral referral, Stage stage) {
+            this.referral = referral;
+            this.stage = stage;
+            this.deadlineNanos = queuedNanos + waitAllowanceNanos(referral.getUrgency());
+        }
+
+        void submit() {
+            try {
+                stages.get(stage).execute(this);
+            } catch (RejectedExecutionException e) {
+                done.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Do the current stage's work, then hand the referral to the next stage
+         */
+        @Override
+        public void run() {
+            try {
+                if (stage == Stage.INTAKE) {
+                    intake(this);
+                } else if (stage == Stage.EMAIL) {
+                    generateEmailCommunication(referral);
+                } else if (stage == Stage.EHR) {
+                    generateEHRUpdate(referral);
+                } else {
+                    writeOutputFile(referral);
+                }
+            } catch (IOException | RuntimeException e) {
+                done.completeExceptionally(e);
+                return;
+            }
+            stage = stage.next();
+            if (stage != null) {
+                submit();
+                return;
+            }
+            String urgency = referral.getUrgency() == null ? "" : referral.getUrgency().trim();
+            latencyByUrgency.computeIfAbsent(urgency, u -> new LatencyStats())
+                    .record(System.nanoTime() - queuedNanos);
+            done.complete(referral);
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            // Deadlines are nanoTime values, so compare their difference rather than the values
+            long difference = deadlineNanos - other.deadlineNanos;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private void writeOutputFile(Referral referral) throws IOException {
+        File directory = outputDirectory;
+        if (directory == null) {
+            return;
+        }
+        documents.writeNow(referral, new File(directory, "referral_" + referral.getReferralID() + ".txt"));
     }
 
     /**
-     * Generate email communication content for referral
+     * Replace a queued referral with its updated details, including one added to the
+     * queue that has not been through intake yet.
+     * Nothing is generated; a referral that is not queued stays unqueued.
      */
-    private void generateEmailCommunication(Referral referral) {
-        StringBuilder email = new StringBuilder();
-        email.append("=== REFERRAL EMAIL COMMUNICATION ===\n");
-        email.append("Date: ").append(LocalDate.now().format(DateTimeFormatter.ISO_DATE)).append("\n");
-        email.append("Referral ID: ").append(referral.getReferralID()).append("\n");
-        email.append("Patient ID: ").append(referral.getPatientID()).append("\n");
-        email.append("From: ").append(referral.getReferringFacility()).append("\n");
-        email.append("To: ").append(referral.getReceivingFacility()).append("\n");
-        email.append("Urgency: ").append(referral.getUrgency()).append("\n");
-        email.append("Clinical Summary: ").append(referral.getClinicalSummary()).append("\n");
-        email.append("Status: ").append(referral.getStatus()).append("\n");
-        email.append("=====================================\n\n");
+    public void updateQueued(String referralID, Referral referral) {
+        synchronized (referralQueue) {
+            Job arriving = inIntake.remove(referralID);
+            if (arriving != null) {
+                arriving.referral = referral;
+                inIntake.put(referral.getReferralID(), arriving);
+            }
+            if (!referralQueue.containsKey(referralID)) {
+                return;
+            }
+            if (referralID.equals(referral.getReferralID())) {
+                referralQueue.put(referralID, referral);
+                group(referral);
+                return;
+            }
+            // Renamed: rebuild the order with the new ID in the old one's place
+            List<Referral> queued = new ArrayList<>(referralQueue.values());
+            referralQueue.clear();
+            for (Referral other : queued) {
+                referralQueue.put(other.getReferralID(), other.getReferralID().equals(referralID) ? referral : other);
+            }
+            ungroup(referralID);
+            group(referral);
+        }
+    }
 
-        emailCommunications.add(email.toString());
+    /**
+     * Queue a job's referral as last updated. If the same referral was added to the queue
+     * again meanwhile, the later job queues it instead.
+     */
+    private void intake(Job job) {
+        synchronized (referralQueue) {
+            Referral referral = job.referral;
+            if (inIntake.remove(referral.getReferralID(), job)) {
+                referralQueue.put(referral.getReferralID(), referral);
+                group(referral);
+            }
+        }
     }
 
     /**
-     * Generate EHR update content for referral
+     * File a queued referral under its current status, moving it from any other
      */
-    private void generateEHRUpdate(Referral referral) {
-        StringBuilder ehr = new StringBuilder();
-        ehr.append("=== ELECTRONIC HEALTH RECORD UPDATE ===\n");
-        ehr.append("Timestamp: ").append(LocalDate.now().format(DateTimeFormatter.ISO_DATE)).append("\n");
-        ehr.append("Referral ID: ").append(referral.getReferralID()).append("\n");
-        ehr.append("Patient ID: ").append(referral.getPatientID()).append("\n");
-        ehr.append("Action: Referral Created/Updated\n");
-        ehr.append("Referring Clinician: ").append(referral.getReferringClinicianID()).append("\n");
-        ehr.append("Receiving Clinician: ").append(referral.getReceivingClinicianID()).append("\n");
-        ehr.append("Clinical Summary: ").append(referral.getClinicalSummary()).append("\n");
-        ehr.append("Audit Trail: Referral processed by system\n");
-        ehr.append("========================================\n\n");
+    private void group(Referral referral) {
+        String status = statusKey(referral.getStatus());
+        String previous = queuedStatus.put(referral.getReferralID(), status);
+        if (status.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            ungroup(referral.getReferralID(), previous);
+        }
+        queuedByStatus.computeIfAbsent(status, s -> new LinkedHashSet<>()).add(referral.getReferralID());
+    }
 
-        ehrUpdates.add(ehr.toString());
+    private void ungroup(String referralID) {
+        String status = queuedStatus.remove(referralID);
+        if (status != null) {
+            ungroup(referralID, status);
+        }
+    }
+
+    private void ungroup(String referralID, String status) {
+        Set<String> ids = queuedByStatus.get(status);
+        ids.remove(referralID);
+        if (ids.isEmpty()) {
+            queuedByStatus.remove(status);
+        }
+    }
+
+    private static String statusKey(String status) {
+        return status == null ? "" : status;
     }
 
     /**
-     * Generate referral text file
+     * Number of queued referrals with this status
      */
-    public void generateReferralFile(Referral referral, String outputPath) {
-        try (FileWriter writer = new FileWriter(outputPath)) {
-            writer.write("=== PATIENT REFERRAL ===\n\n");
-            writer.write("Referral ID: " + referral.getReferralID() + "\n");
-            writer.write("Date: " + referral.getDate() + "\n");
-            writer.write("Urgency Level: " + referral.getUrgency() + "\n");
-            writer.write("Status: " + referral.getStatus() + "\n\n");
+    public int getQueueDepth(String status) {
+        synchronized (referralQueue) {
+            Set<String> ids = queuedByStatus.get(statusKey(status));
+            return ids == null ? 0 : ids.size();
+        }
+    }
 
-            writer.write("PATIENT INFORMATION:\n");
-            writer.write("Patient ID: " + referral.getPatientID() + "\n\n");
+    /**
+     * Number of queued referrals for each status they have
+     */
+    public Map<String, Integer> getQueueDepthByStatus() {
+        Map<String, Integer> depths = new TreeMap<>();
+        synchronized (referralQueue) {
+            queuedByStatus.forEach((status, ids) -> depths.put(status, ids.size()));
+        }
+        return depths;
+    }
 
-            writer.write("REFERRING INFORMATION:\n");
-            writer.write("Clinician ID: " + referral.getReferringClinicianID() + "\n");
-            writer.write("Facility: " + referral.getReferringFacility() + "\n\n");
+    /**
+     * Process referral queue: pending referrals go through the pipeline again from the
+     * EMAIL stage
+     * @return completes once all of them are done
+     */
+    public CompletableFuture<Void> processQueue() {
+        List<Referral> pending = new ArrayList<>();
+        synchronized (referralQueue) {
+            Set<String> ids = queuedByStatus.get("Pending");
+            for (String referralID : ids == null ? List.<String>of() : new ArrayList<>(ids)) {
+                Referral referral = referralQueue.get(referralID);
+                if ("Pending".equals(referral.getStatus())) {
+                    pending.add(referral);
+                } else {
+                    group(referral); // status was changed on the object itself
+                }
+            }
+        }
+        // Submit outside the lock: a full stage makes us wait, and its workers may need the lock
+        List<CompletableFuture<Referral>> processing = new ArrayList<>(pending.size());
+        for (Referral referral : pending) {
+            Job job = new Job(referral, Stage.EMAIL);
+            job.submit();
+            processing.add(job.done);
+        }
+        return CompletableFuture.allOf(processing.toArray(new CompletableFuture<?>[0]));
+    }
 
-            writer.write("RECEIVING INFORMATION:\n");
-            writer.write("Clinician ID: " + referral.getReceivingClinicianID() + "\n");
-            writer.write("Facility: " + referral.getReceivingFacility() + "\n\n");
+    /**
+     * Generate email communication content for referral
+     */
+    private void generateEmailCommunication(Referral referral) {
+        emailCommunications.append(referral.getReferralID(), emailTemplate.render(referral));
+    }
 
-            writer.write("CLINICAL SUMMARY:\n");
-            writer.write(referral.getClinicalSummary() + "\n\n");
+    /**
+     * Generate EHR update content for referral
+     */
+    private void generateEHRUpdate(Referral referral) {
+        ehrUpdates.append(referral.getReferralID(), ehrTemplate.render(referral));
+    }
 
-            writer.write("=== END OF REFERRAL ===\n");
+    /**
+     * Generate referral text file
+     */
+    public void generateReferralFile(Referral referral, String outputPath) {
+        try {
+            documents.writeNow(referral, new File(outputPath));
 
             // Also add to email communications
             generateEmailCommunication(referral);
@@ -148,32 +460,117 @@ public class ReferralManager {
     }
 
     /**
-     * Get all email communications
+     * Generate referral text file, with its email and EHR update, on a document writer thread
+     * @return completes with the referral once done, or exceptionally if the file could not be written
+     */
+    public CompletableFuture<Referral> generateReferralFileAsync(Referral referral, String outputPath) {
+        return documents.write(referral, new File(outputPath)).thenApply(written -> {
+            generateEmailCommunication(written);
+            generateEHRUpdate(written);
+            return written;
+        });
+    }
+
+    /**
+     * Generate referral_<id>.txt in the directory for each referral, as generateReferralFileAsync
+     * does, a few at a time
+     * @return completes once every referral has been tried
+     */
+    public CompletableFuture<DocumentBatchReport> generateReferralFiles(List<Referral> referrals, File directory) {
+        long started = System.nanoTime();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<?>[] generating = new CompletableFuture<?>[referrals.size()];
+        for (int i = 0; i < generating.length; i++) {
+            Referral referral = referrals.get(i);
+            String outputPath = new File(directory, "referral_" + referral.getReferralID() + ".txt").getPath();
+            generating[i] = generateReferralFileAsync(referral, outputPath).handle((written, e) -> {
+                if (e != null) {
+                    errors.add(referral.getReferralID() + ": " + (e.getCause() != null ? e.getCause() : e).getMessage());
+                }
+                return written;
+            });
+        }
+        return CompletableFuture.allOf(generating).thenApply(done ->
+                new DocumentBatchReport(generating.length - errors.size(), errors, System.nanoTime() - started));
+    }
+
+    /**
+     * Use the layouts in email.txt, ehr.txt and referral.txt in this directory, where
+     * present, and the built-in ones otherwise (see ReferralTemplate for the syntax)
+     */
+    public void setTemplateDirectory(File directory) {
+        emailTemplate = ReferralTemplate.load(new File(directory, "email.txt"), DEFAULT_EMAIL_TEMPLATE);
+        ehrTemplate = ReferralTemplate.load(new File(directory, "ehr.txt"), DEFAULT_EHR_TEMPLATE);
+        documents.setTemplate(ReferralTemplate.load(new File(directory, "referral.txt"),
+                ReferralDocumentWriter.DEFAULT_TEMPLATE));
+    }
+
+    /**
+     * Writer used for referral documents, e.g. to change how many are written at once
+     */
+    public ReferralDocumentWriter getDocumentWriter() {
+        return documents;
+    }
+
+    /**
+     * Get the most recent email communications; older ones are in getEmailTrail()
      */
     public List<String> getEmailCommunications() {
-        return new ArrayList<>(emailCommunications);
+        return textsOf(emailCommunications.getRecent());
     }
 
     /**
-     * Get all EHR updates
+     * Get the most recent EHR updates; older ones are in getEHRTrail()
      */
     public List<String> getEHRUpdates() {
-        return new ArrayList<>(ehrUpdates);
+        return textsOf(ehrUpdates.getRecent());
+    }
+
+    private static List<String> textsOf(List<AuditRecord> records) {
+        List<String> texts = new ArrayList<>(records.size());
+        for (AuditRecord record : records) {
+            texts.add(record.getText());
+        }
+        return texts;
+    }
+
+    /**
+     * Every email communication, for paged reads by time or referral
+     */
+    public AuditTrail getEmailTrail() {
+        return emailCommunications;
+    }
+
+    /**
+     * Every EHR update, for paged reads by time or referral
+     */
+    public AuditTrail getEHRTrail() {
+        return ehrUpdates;
+    }
+
+    /**
+     * Keep the email and EHR logs on disk under this directory; null keeps only the recent ones in memory
+     */
+    public void setAuditDirectory(File directory) {
+        emailCommunications.setDirectory(directory == null ? null : new File(directory, "email"));
+        ehrUpdates.setDirectory(directory == null ? null : new File(directory, "ehr"));
     }
 
     /**
      * Get referral queue
      */
     public List<Referral> getReferralQueue() {
-        return new ArrayList<>(referralQueue);
+        synchronized (referralQueue) {
+            return new ArrayList<>(referralQueue.values());
+        }
     }
 
     /**
      * Clear audit trail (for testing purposes)
      */
     public void clearAuditTrail() {
-        emailCommunications.clear();
-        ehrUpdates.clear();
+        emailCommunications.clearRecent();
+        ehrUpdates.clearRecent();
     }
 }
 
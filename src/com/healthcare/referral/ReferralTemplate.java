@@ -0,0 +1,182 @@
+package com.healthcare.referral;
+
+import com.healthcare.model.Referral;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Layout of a referral document, email or EHR update, compiled once into literal text and
+ * referral fields so rendering is a run of appends into a buffer sized up front.
+ *
+ * A layout is plain text with fields written as {name}, e.g. "Referral ID: {referralID}";
+ * {today} is the current date, formatted once a day. Write {{ for a literal brace.
+ */
+public class ReferralTemplate {
+    private static final Map<String, Function<Referral, String>> FIELDS = new LinkedHashMap<>();
+
+    static {
+        FIELDS.put("referralID", Referral::getReferralID);
+        FIELDS.put("patientID", Referral::getPatientID);
+        FIELDS.put("referringClinicianID", Referral::getReferringClinicianID);
+        FIELDS.put("receivingClinicianID", Referral::getReceivingClinicianID);
+        FIELDS.put("referringFacility", Referral::getReferringFacility);
+        FIELDS.put("receivingFacility", Referral::getReceivingFacility);
+        FIELDS.put("date", Referral::getDate);
+        FIELDS.put("urgency", Referral::getUrgency);
+        FIELDS.put("referralReason", Referral::getReferralReason);
+        FIELDS.put("clinicalSummary", Referral::getClinicalSummary);
+        FIELDS.put("requestedInvestigations", Referral::getRequestedInvestigations);
+        FIELDS.put("appointmentID", Referral::getAppointmentID);
+        FIELDS.put("notes", Referral::getNotes);
+        FIELDS.put("status", Referral::getStatus);
+        FIELDS.put("createdDate", Referral::getCreatedDate);
+        FIELDS.put("lastUpdated", Referral::getLastUpdated);
+        FIELDS.put("today", referral -> today());
+    }
+
+    private static volatile Today today = new Today(LocalDate.now());
+
+    /**
+     * Today's date as ISO text, and the time it stops being today
+     */
+    private static class Today {
+        final String text;
+        final long endMillis;
+
+        Today(LocalDate date) {
+            ZoneId zone = ZoneId.systemDefault();
+            text = date.format(DateTimeFormatter.ISO_DATE);
+            endMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    private final String layout;
+    private final String[] literals; // literals[i] comes before fields[i]; one more literal than fields
+    private final Function<Referral, String>[] fields;
+    private volatile int expectedLength; // grows to fit the longest message seen
+
+    private ReferralTemplate(String layout, List<String> literals, List<Function<Referral, String>> fields) {
+        this.layout = layout;
+        this.literals = literals.toArray(new String[0]);
+        this.fields = toArray(fields);
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.expectedLength = length + 16 * fields.size();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<Referral, String>[] toArray(List<Function<Referral, String>> fields) {
+        return fields.toArray(new Function[0]);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the layout names an unknown field or leaves a brace open
+     */
+    public static ReferralTemplate compile(String layout) {
+        List<String> literals = new ArrayList<>();
+        List<Function<Referral, String>> fields = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < layout.length()) {
+            char c = layout.charAt(i);
+            if (c != '{') {
+                literal.append(c);
+                i++;
+            } else if (layout.startsWith("{{", i)) {
+                literal.append('{');
+                i += 2;
+            } else {
+                int end = layout.indexOf('}', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed { at character " + i);
+                }
+                String name = layout.substring(i + 1, end).trim();
+                Function<Referral, String> field = FIELDS.get(name);
+                if (field == null) {
+                    throw new IllegalArgumentException("Unknown field {" + name + "}, expected one of " + FIELDS.keySet());
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                fields.add(field);
+                i = end + 1;
+            }
+        }
+        literals.add(literal.toString());
+        return new ReferralTemplate(layout, literals, fields);
+    }
+
+    /**
+     * Compile the layout in a file, or return the fallback if there is no such file or it
+     * does not compile
+     */
+    public static ReferralTemplate load(File file, ReferralTemplate fallback) {
+        if (!file.isFile()) {
+            return fallback;
+        }
+        try {
+            return compile(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error loading template " + file.getName() + ": " + e.getMessage());
+            return fallback;
+        }
+    }
+
+    /**
+     * Render into a new string
+     */
+    public String render(Referral referral) {
+        StringBuilder text = new StringBuilder(expectedLength);
+        render(referral, text);
+        return text.toString();
+    }
+
+    /**
+     * Append the rendered text to a buffer
+     */
+    public void render(Referral referral, StringBuilder text) {
+        int start = text.length();
+        for (int i = 0; i < fields.length; i++) {
+            text.append(literals[i]).append(fields[i].apply(referral));
+        }
+        text.append(literals[fields.length]);
+        int length = text.length() - start;
+        if (length > expectedLength) {
+            expectedLength = length;
+        }
+    }
+
+    /**
+     * Rough size of a rendered message, to size buffers by
+     */
+    public int getExpectedLength() {
+        return expectedLength;
+    }
+
+    /**
+     * The layout this was compiled from
+     */
+    public String getLayout() {
+        return layout;
+    }
+
+    private static String today() {
+        Today current = today;
+        if (System.currentTimeMillis() >= current.endMillis) {
+            current = new Today(LocalDate.now());
+            today = current;
+        }
+        return current.text;
+    }
+}
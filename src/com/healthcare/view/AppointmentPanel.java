@@ -4,14 +4,13 @@ import com.healthcare.controller.HealthcareController;
 import com.healthcare.model.Appointment;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 
 public class AppointmentPanel extends JPanel {
 
     private HealthcareController controller;
     private JTable table;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Appointment> tableModel;
 
     private JTextField appointmentIDField, patientIDField, clinicianIDField, facilityIDField;
     private JTextField dateField, timeField, durationField, typeField, statusField, reasonField, notesField;
@@ -31,18 +30,28 @@ public class AppointmentPanel extends JPanel {
     }
 
     // ================= TABLE =================
-    private JScrollPane createTablePanel() {
+    private JPanel createTablePanel() {
         String[] columns = {
                 "Appointment ID", "Patient ID", "Clinician ID", "Facility ID",
                 "Date", "Time", "Duration", "Type", "Status",
                 "Reason", "Notes", "Created", "Last Modified"
         };
 
-        tableModel = new DefaultTableModel(columns, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        tableModel = new EntityTableModel<>(Appointment.class, Appointment::getAppointmentID, columns,
+                Appointment::getAppointmentID,
+                Appointment::getPatientID,
+                Appointment::getClinicianID,
+                Appointment::getFacilityID,
+                Appointment::getDate,
+                Appointment::getTime,
+                Appointment::getDurationMinutes,
+                Appointment::getAppointmentType,
+                Appointment::getStatus,
+                Appointment::getReason,
+                Appointment::getNotes,
+                Appointment::getCreatedDate,
+                Appointment::getLastModified);
+        controller.addChangeListener(tableModel);
 
         table = new JTable(tableModel);
         table.setRowHeight(30);
@@ -69,7 +78,12 @@ public class AppointmentPanel extends JPanel {
         );
 
         scrollPane.setBorder(BorderFactory.createTitledBorder("Appointments List"));
-        return scrollPane;
+
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setOpaque(false);
+        tablePanel.add(new SearchBar<>(controller, table, tableModel, controller::getAllAppointments), BorderLayout.NORTH);
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
+        return tablePanel;
     }
 
     private void setTableColumnWidths() {
@@ -162,25 +176,21 @@ public class AppointmentPanel extends JPanel {
     // ================= CRUD =================
     private void addAppointment() {
         controller.addAppointment(createAppointmentFromForm());
-        refreshData();
         clearForm();
     }
 
     private void updateAppointment() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r >= 0) {
-            controller.deleteAppointment((String) tableModel.getValueAt(r, 0));
-            controller.addAppointment(createAppointmentFromForm());
-            refreshData();
+            controller.updateAppointment((String) tableModel.getValueAt(r, 0), createAppointmentFromForm());
             clearForm();
         }
     }
 
     private void deleteAppointment() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r >= 0) {
             controller.deleteAppointment((String) tableModel.getValueAt(r, 0));
-            refreshData();
             clearForm();
         }
     }
@@ -204,7 +214,7 @@ public class AppointmentPanel extends JPanel {
     }
 
     private void loadSelectedAppointment() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r < 0) return;
 
         appointmentIDField.setText((String) tableModel.getValueAt(r, 0));
@@ -231,14 +241,6 @@ public class AppointmentPanel extends JPanel {
     }
 
     public void refreshData() {
-        tableModel.setRowCount(0);
-        for (Appointment a : controller.getAllAppointments()) {
-            tableModel.addRow(new Object[]{
-                    a.getAppointmentID(), a.getPatientID(), a.getClinicianID(), a.getFacilityID(),
-                    a.getDate(), a.getTime(), a.getDurationMinutes(),
-                    a.getAppointmentType(), a.getStatus(), a.getReason(),
-                    a.getNotes(), a.getCreatedDate(), a.getLastModified()
-            });
-        }
+        tableModel.setRows(controller.getAllAppointments());
     }
 }
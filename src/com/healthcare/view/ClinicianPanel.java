@@ -5,7 +5,6 @@ import com.healthcare.model.Clinician;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 
 public class ClinicianPanel extends JPanel {
@@ -13,7 +12,7 @@ public class ClinicianPanel extends JPanel {
     private HealthcareController controller;
 
     private JTable table;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Clinician> tableModel;
 
     private JTextField clinicianIDField, firstNameField, lastNameField, qualificationField;
     private JTextField specialtyField, gmcNumberField, workplaceField, workplaceTypeField;
@@ -33,16 +32,27 @@ public class ClinicianPanel extends JPanel {
     }
 
     // ================= TABLE =================
-    private JScrollPane createTablePanel() {
+    private JPanel createTablePanel() {
         String[] columns = {
                 "ID", "First Name", "Last Name", "Qualification",
                 "Specialty", "GMC#", "Workplace", "Workplace Type",
                 "Status", "Start Date", "Email", "Phone"
         };
 
-        tableModel = new DefaultTableModel(columns, 0) {
-            public boolean isCellEditable(int r, int c) { return false; }
-        };
+        tableModel = new EntityTableModel<>(Clinician.class, Clinician::getClinicianID, columns,
+                Clinician::getClinicianID,
+                Clinician::getFirstName,
+                Clinician::getLastName,
+                Clinician::getQualification,
+                Clinician::getSpecialty,
+                Clinician::getGmcNumber,
+                Clinician::getWorkplace,
+                Clinician::getWorkplaceType,
+                Clinician::getEmploymentStatus,
+                Clinician::getStartDate,
+                Clinician::getEmail,
+                Clinician::getPhone);
+        controller.addChangeListener(tableModel);
 
         table = new JTable(tableModel);
         table.setRowHeight(28);
@@ -58,7 +68,12 @@ public class ClinicianPanel extends JPanel {
 
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.setBorder(BorderFactory.createTitledBorder("Clinicians List"));
-        return scrollPane;
+
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setOpaque(false);
+        tablePanel.add(new SearchBar<>(controller, table, tableModel, controller::getAllClinicians), BorderLayout.NORTH);
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
+        return tablePanel;
     }
 
     private void setTableColumnWidths() {
@@ -135,45 +150,28 @@ public class ClinicianPanel extends JPanel {
     // ================= CRUD =================
     private void addClinician() {
         controller.addClinician(createClinicianFromForm());
-        refreshData(); clearForm();
+        clearForm();
     }
 
     private void updateClinician() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
-            controller.deleteClinician((String) tableModel.getValueAt(row, 0));
-            controller.addClinician(createClinicianFromForm());
-            refreshData(); clearForm();
+            controller.updateClinician((String) tableModel.getValueAt(row, 0), createClinicianFromForm());
+            clearForm();
         }
     }
 
     private void deleteClinician() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
             controller.deleteClinician((String) tableModel.getValueAt(row, 0));
-            refreshData(); clearForm();
+            clearForm();
         }
     }
 
     // ================= DATA =================
     public void refreshData() {
-        tableModel.setRowCount(0);
-        for (Clinician c : controller.getAllClinicians()) {
-            tableModel.addRow(new Object[]{
-                    c.getClinicianID(),
-                    c.getFirstName(),
-                    c.getLastName(),
-                    c.getQualification(),
-                    c.getSpecialty(),
-                    c.getGmcNumber(),
-                    c.getWorkplace(),
-                    c.getWorkplaceType(),
-                    c.getEmploymentStatus(),
-                    c.getStartDate(),
-                    c.getEmail(),
-                    c.getPhone()
-            });
-        }
+        tableModel.setRows(controller.getAllClinicians());
     }
 
     private Clinician createClinicianFromForm() {
@@ -194,7 +192,7 @@ public class ClinicianPanel extends JPanel {
     }
 
     private void loadSelectedClinician() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r < 0) return;
         clinicianIDField.setText((String) tableModel.getValueAt(r, 0));
         firstNameField.setText((String) tableModel.getValueAt(r, 1));
@@ -0,0 +1,224 @@
+package com.healthcare.view;
+
+import com.healthcare.data.DataChangeEvent;
+import com.healthcare.data.DataChangeListener;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Read-only table model over a list of entities.
+ * Cell values are read from the entity when the table asks for them, so only
+ * the visible cells are ever produced. As a DataChangeListener it applies single
+ * inserts, updates and deletes in constant time and fires events for just the
+ * affected rows; a delete moves the last row into the deleted row's place.
+ */
+class EntityTableModel<T> extends AbstractTableModel implements DataChangeListener {
+    private static final long serialVersionUID = 1L;
+
+    private final Class<T> type;
+    private final Function<T, String> keyOf;
+    private final String[] columnNames;
+    private final List<Function<T, ?>> columns;
+    // The rows are the first baseRows of the list given to setRows, which is never copied
+    // or changed, then the rows inserted since. A row changed since, or moved into the
+    // place of a deleted row, is read from replaced instead.
+    private List<T> base = List.of();
+    private int baseRows;
+    private final List<T> appended = new ArrayList<>();
+    private final Map<Integer, T> replaced = new HashMap<>();
+
+    private final Map<String, Integer> rowOfKey = new HashMap<>(); // built on first use
+    private boolean indexed;
+    private int moves; // counts changes that move rows to a different index
+
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is copied into an immutable list
+    EntityTableModel(Class<T> type, Function<T, String> keyOf, String[] columnNames, Function<T, ?>... columns) {
+        if (columnNames.length != columns.length) {
+            throw new IllegalArgumentException(columnNames.length + " column names for "
+                    + columns.length + " columns");
+        }
+        this.type = type;
+        this.keyOf = keyOf;
+        this.columnNames = columnNames;
+        this.columns = List.of(columns);
+    }
+
+    /**
+     * Show a new list of entities. The list is shown as it is, not copied, and must not
+     * change afterwards.
+     */
+    void setRows(List<T> rows) {
+        base = rows;
+        baseRows = rows.size();
+        appended.clear();
+        replaced.clear();
+        rowOfKey.clear();
+        indexed = false;
+        moves++;
+        fireTableDataChanged();
+    }
+
+    T getRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= getRowCount()) {
+            throw new IndexOutOfBoundsException("Row " + rowIndex + " of " + getRowCount());
+        }
+        T entity = replaced.isEmpty() ? null : replaced.get(rowIndex);
+        if (entity != null) {
+            return entity;
+        }
+        return rowIndex < baseRows ? base.get(rowIndex) : appended.get(rowIndex - baseRows);
+    }
+
+    /**
+     * Changes whenever rows are replaced or deleted, moving other rows to a different index
+     */
+    int getMoves() {
+        return moves;
+    }
+
+    /**
+     * Rows showing the entities with these keys; keys that are not shown are ignored
+     */
+    BitSet rowsOf(Collection<String> keys) {
+        BitSet found = new BitSet(getRowCount());
+        for (String key : keys) {
+            int row = rowOf(key);
+            if (row >= 0) {
+                found.set(row);
+            }
+        }
+        return found;
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    String keyOf(T entity) {
+        return keyOf.apply(entity);
+    }
+
+    /**
+     * Whether any column of an entity contains the text, ignoring case.
+     * Only reads the entity, so it may be called off the event dispatch thread.
+     */
+    boolean containsText(T entity, String text) {
+        for (Function<T, ?> column : columns) {
+            Object value = column.apply(entity);
+            if (value != null && containsIgnoreCase(value.toString(), text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(String value, String text) {
+        for (int i = 0; i <= value.length() - text.length(); i++) {
+            if (value.regionMatches(true, i, text, 0, text.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Model row of a table's selected row, or -1; the table may be sorted or filtered
+     */
+    static int selectedRow(JTable table) {
+        int row = table.getSelectedRow();
+        return row < 0 ? -1 : table.convertRowIndexToModel(row);
+    }
+
+    @Override
+    public void dataChanged(DataChangeEvent event) {
+        T entity = event.getEntity(type);
+        if (entity == null) {
+            return;
+        }
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> dataChanged(event));
+            return;
+        }
+
+        int row = rowOf(event.getKey());
+        if (event.getType() == DataChangeEvent.Type.DELETED) {
+            if (row >= 0) {
+                removeRow(row, event.getKey());
+            }
+        } else if (row >= 0) {
+            replaced.put(row, entity);
+            fireTableRowsUpdated(row, row);
+        } else {
+            appended.add(entity);
+            row = getRowCount() - 1;
+            rowOfKey.put(event.getKey(), row);
+            fireTableRowsInserted(row, row);
+        }
+    }
+
+    /**
+     * Delete a row in constant time by moving the last row into its place
+     */
+    private void removeRow(int row, String key) {
+        int last = getRowCount() - 1;
+        T moved = getRow(last);
+        rowOfKey.remove(key);
+        replaced.remove(last);
+        if (appended.isEmpty()) {
+            baseRows--;
+        } else {
+            appended.remove(appended.size() - 1);
+        }
+        moves++;
+        fireTableRowsDeleted(last, last);
+        if (row != last) {
+            replaced.put(row, moved);
+            rowOfKey.put(keyOf.apply(moved), row);
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * @return the row showing the entity with this key, or -1
+     */
+    private int rowOf(String key) {
+        if (!indexed) {
+            for (int i = 0; i < getRowCount(); i++) {
+                rowOfKey.put(keyOf.apply(getRow(i)), i);
+            }
+            indexed = true;
+        }
+        Integer row = rowOfKey.get(key);
+        return row == null ? -1 : row;
+    }
+
+    @Override
+    public int getRowCount() {
+        return baseRows + appended.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return columns.get(columnIndex).apply(getRow(rowIndex));
+    }
+}
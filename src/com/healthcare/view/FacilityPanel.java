@@ -4,14 +4,13 @@ import com.healthcare.controller.HealthcareController;
 import com.healthcare.model.Facility;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 
 public class FacilityPanel extends JPanel {
 
     private HealthcareController controller;
     private JTable table;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Facility> tableModel;
 
     private JTextField facilityIDField, nameField, typeField, addressField, postcodeField;
     private JTextField phoneField, emailField, openingHoursField, managerField, servicesField, capacityField;
@@ -30,12 +29,22 @@ public class FacilityPanel extends JPanel {
     }
 
     // ================= TABLE =================
-    private JScrollPane createTablePanel() {
+    private JPanel createTablePanel() {
         String[] columns = {"Facility ID", "Name", "Type", "Address", "Postcode", "Phone", "Email",
                             "Opening Hours", "Manager", "Services", "Capacity"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            public boolean isCellEditable(int r, int c) { return false; }
-        };
+        tableModel = new EntityTableModel<>(Facility.class, Facility::getFacilityID, columns,
+                Facility::getFacilityID,
+                Facility::getName,
+                Facility::getType,
+                Facility::getAddress,
+                Facility::getPostcode,
+                Facility::getPhone,
+                Facility::getEmail,
+                Facility::getOpeningHours,
+                Facility::getManagerName,
+                Facility::getServices,
+                Facility::getCapacity);
+        controller.addChangeListener(tableModel);
 
         table = new JTable(tableModel);
         table.setRowHeight(28);
@@ -51,7 +60,12 @@ public class FacilityPanel extends JPanel {
 
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.setBorder(BorderFactory.createTitledBorder("Facilities List"));
-        return scrollPane;
+
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setOpaque(false);
+        tablePanel.add(new SearchBar<>(controller, table, tableModel, controller::getAllFacilities), BorderLayout.NORTH);
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
+        return tablePanel;
     }
 
     private void setTableColumnWidths() {
@@ -147,25 +161,22 @@ public class FacilityPanel extends JPanel {
     // ================= CRUD =================
     private void addFacility() {
         Facility f = createFacilityFromForm();
-        if (f != null) { controller.addFacility(f); refreshData(); clearForm(); }
+        if (f != null) { controller.addFacility(f); clearForm(); }
     }
 
     private void updateFacility() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
             String id = (String) tableModel.getValueAt(row, 0);
-            controller.deleteFacility(id);
-            controller.addFacility(createFacilityFromForm());
-            refreshData();
+            controller.updateFacility(id, createFacilityFromForm());
             clearForm();
         }
     }
 
     private void deleteFacility() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
             controller.deleteFacility((String) tableModel.getValueAt(row, 0));
-            refreshData();
             clearForm();
         }
     }
@@ -187,7 +198,7 @@ public class FacilityPanel extends JPanel {
     }
 
     private void loadSelectedFacility() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r < 0) return;
         facilityIDField.setText((String) tableModel.getValueAt(r, 0));
         nameField.setText((String) tableModel.getValueAt(r, 1));
@@ -210,14 +221,7 @@ public class FacilityPanel extends JPanel {
     }
 
     public void refreshData() {
-        tableModel.setRowCount(0);
-        for (Facility f : controller.getAllFacilities()) {
-            tableModel.addRow(new Object[]{
-                f.getFacilityID(), f.getName(), f.getType(), f.getAddress(), f.getPostcode(),
-                f.getPhone(), f.getEmail(), f.getOpeningHours(), f.getManagerName(),
-                f.getServices(), f.getCapacity()
-            });
-        }
+        tableModel.setRows(controller.getAllFacilities());
         setTableColumnWidths();
     }
 }
@@ -1,13 +1,39 @@
 package com.healthcare.view;
 
 import com.healthcare.controller.HealthcareController;
+import com.healthcare.data.LoadListener;
+import com.healthcare.data.LoadReport;
+import com.healthcare.data.ReloadResult;
+import com.healthcare.model.*;
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 public class MainView extends JFrame {
 
+    // Set to true to print the time to first paint and exit, e.g. -Dhealthcare.startupBenchmark=true
+    public static final String STARTUP_BENCHMARK_PROPERTY = "healthcare.startupBenchmark";
+
+    private static final String[] TAB_TITLES = {
+            "Patients", "Clinicians", "Facilities", "Appointments", "Prescriptions", "Referrals", "Staff"
+    };
+    private static final Class<?>[] TAB_ENTITIES = {
+            Patient.class, Clinician.class, Facility.class, Appointment.class, Prescription.class,
+            Referral.class, Staff.class
+    };
+
     private HealthcareController controller;
     private JTabbedPane tabbedPane;
+    private JLabel statusLabel;
+    private JProgressBar loadProgressBar;
+    private JButton cancelLoadButton;
+    private JMenuItem loadMenuItem;
+    private JMenuItem saveMenuItem;
+    private SwingWorker<LoadReport, String> loadWorker; // set until its load has really stopped
+    private long launchNanos;
 
     private PatientPanel patientPanel;
     private ClinicianPanel clinicianPanel;
@@ -20,7 +46,7 @@ public class MainView extends JFrame {
     public MainView(HealthcareController controller) {
         this.controller = controller;
         initializeGUI();
-        refreshAllPanels();
+        controller.watchDataDirectory(SwingUtilities::invokeLater, this::dataFileReloaded);
     }
 
     private void initializeGUI() {
@@ -54,21 +80,12 @@ public class MainView extends JFrame {
         tabbedPane = new JTabbedPane();
         tabbedPane.setFont(tabbedPane.getFont().deriveFont(Font.BOLD, 13f));
 
-        patientPanel = new PatientPanel(controller);
-        clinicianPanel = new ClinicianPanel(controller);
-        facilityPanel = new FacilityPanel(controller);
-        appointmentPanel = new AppointmentPanel(controller);
-        prescriptionPanel = new PrescriptionPanel(controller);
-        referralPanel = new ReferralPanel(controller);
-        staffPanel = new StaffPanel(controller);
-
-        tabbedPane.addTab("Patients", patientPanel);
-        tabbedPane.addTab("Clinicians", clinicianPanel);
-        tabbedPane.addTab("Facilities", facilityPanel);
-        tabbedPane.addTab("Appointments", appointmentPanel);
-        tabbedPane.addTab("Prescriptions", prescriptionPanel);
-        tabbedPane.addTab("Referrals", referralPanel);
-        tabbedPane.addTab("Staff", staffPanel);
+        // Panels are built, and filled with data, when their tab is first shown
+        for (String title : TAB_TITLES) {
+            tabbedPane.addTab(title, new JPanel());
+        }
+        tabbedPane.addChangeListener(e -> showTab(tabbedPane.getSelectedIndex()));
+        showTab(0);
 
         // 🔥 IMPORTANT: wrapper panel so tabs take FULL HEIGHT
         JPanel centerWrapper = new JPanel(new BorderLayout());
@@ -80,26 +97,68 @@ public class MainView extends JFrame {
         statusBar.setBorder(BorderFactory.createMatteBorder(1, 0, 0, 0, new Color(230, 230, 230)));
         statusBar.setBackground(Color.WHITE);
 
-        JLabel statusLabel = new JLabel("✓ Ready");
+        statusLabel = new JLabel("✓ Ready");
         statusLabel.setForeground(new Color(76, 175, 80));
         statusBar.add(statusLabel);
 
+        loadProgressBar = new JProgressBar(0, 100);
+        loadProgressBar.setStringPainted(true);
+        loadProgressBar.setVisible(false);
+        statusBar.add(loadProgressBar);
+
+        cancelLoadButton = new JButton("Cancel");
+        cancelLoadButton.setFocusPainted(false);
+        cancelLoadButton.setVisible(false);
+        cancelLoadButton.addActionListener(e -> cancelLoading());
+        statusBar.add(cancelLoadButton);
+
         add(statusBar, BorderLayout.SOUTH);
 
         createMenuBar();
     }
 
+    /**
+     * Build the panel of a tab the first time it is shown
+     */
+    private void showTab(int index) {
+        if (index < 0 || tabbedPane.getComponentAt(index).getClass() != JPanel.class) {
+            return;
+        }
+        JPanel panel;
+        Class<?> entityType = TAB_ENTITIES[index];
+        if (entityType == Patient.class) {
+            panel = patientPanel = new PatientPanel(controller);
+        } else if (entityType == Clinician.class) {
+            panel = clinicianPanel = new ClinicianPanel(controller);
+        } else if (entityType == Facility.class) {
+            panel = facilityPanel = new FacilityPanel(controller);
+        } else if (entityType == Appointment.class) {
+            panel = appointmentPanel = new AppointmentPanel(controller);
+        } else if (entityType == Prescription.class) {
+            panel = prescriptionPanel = new PrescriptionPanel(controller);
+        } else if (entityType == Referral.class) {
+            panel = referralPanel = new ReferralPanel(controller);
+        } else {
+            panel = staffPanel = new StaffPanel(controller);
+        }
+        tabbedPane.setComponentAt(index, panel);
+    }
+
     private void createMenuBar() {
         JMenuBar menuBar = new JMenuBar();
 
         JMenu fileMenu = new JMenu("File");
-        JMenuItem loadMenuItem = new JMenuItem("Load Data");
+        loadMenuItem = new JMenuItem("Load Data");
         loadMenuItem.addActionListener(e -> loadData());
 
+        saveMenuItem = new JMenuItem("Save");
+        saveMenuItem.addActionListener(e -> saveData());
+
         JMenuItem exitMenuItem = new JMenuItem("Exit");
         exitMenuItem.addActionListener(e -> System.exit(0));
 
         fileMenu.add(loadMenuItem);
+        fileMenu.add(saveMenuItem);
         fileMenu.addSeparator();
         fileMenu.add(exitMenuItem);
 
@@ -112,19 +171,220 @@ public class MainView extends JFrame {
         chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
 
         if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-            controller.loadData(chooser.getSelectedFile().getAbsolutePath());
-            refreshAllPanels();
-            JOptionPane.showMessageDialog(this, "Data loaded successfully!");
+            startLoading(chooser.getSelectedFile().getAbsolutePath(), true);
+        }
+    }
+
+    /**
+     * Load a data directory on a background thread. Progress is shown in the status bar,
+     * each tab fills in as soon as its entity is loaded, and the load can be cancelled.
+     */
+    public void loadDataInBackground(String dataDirectory) {
+        startLoading(dataDirectory, false);
+    }
+
+    private void startLoading(String dataDirectory, boolean confirm) {
+        if (loadWorker != null) {
+            return;
+        }
+        Map<String, Long> bytesByFile = new ConcurrentHashMap<>();
+        long[] totalBytes = {0};
+
+        loadWorker = new SwingWorker<LoadReport, String>() {
+            @Override
+            protected LoadReport doInBackground() {
+                try {
+                    return load();
+                } finally {
+                    // done() runs as soon as the worker is cancelled, but the load only stops here
+                    SwingWorker<LoadReport, String> worker = this;
+                    SwingUtilities.invokeLater(() -> loadStopped(worker));
+                }
+            }
+
+            private LoadReport load() {
+                return controller.loadData(dataDirectory, SwingUtilities::invokeLater, new LoadListener() {
+                    @Override
+                    public void loadStarted(long total) {
+                        totalBytes[0] = total;
+                    }
+
+                    @Override
+                    public void fileProgress(String fileName, long bytesRead, int rows) {
+                        bytesByFile.put(fileName, bytesRead);
+                        if (totalBytes[0] > 0) {
+                            long read = 0;
+                            for (long bytes : bytesByFile.values()) {
+                                read += bytes;
+                            }
+                            setProgress((int) Math.min(100, read * 100 / totalBytes[0]));
+                        }
+                        publish(fileName + ": " + rows + " rows");
+                    }
+
+                    @Override
+                    public void entityLoaded(Class<?> entityType, int rows) {
+                        refreshPanel(entityType);
+                    }
+                });
+            }
+
+            @Override
+            protected void process(List<String> messages) {
+                statusLabel.setText("Loading " + messages.get(messages.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    statusLabel.setText("Cancelling...");
+                    cancelLoadButton.setEnabled(false);
+                    return;
+                }
+                try {
+                    LoadReport report = get();
+                    if (report.getReplayedChanges() > 0) {
+                        refreshAllPanels(); // the change log is replayed after the last entityLoaded
+                    }
+                    statusLabel.setText("✓ Loaded " + report.getTotalRows() + " rows in "
+                            + report.getTotalMillis() + " ms");
+                    if (confirm) {
+                        JOptionPane.showMessageDialog(MainView.this, "Data loaded successfully!");
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    statusLabel.setText("Error loading data: " + e.getMessage());
+                }
+            }
+        };
+        loadWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                loadProgressBar.setValue((Integer) e.getNewValue());
+            }
+        });
+
+        statusLabel.setText("Loading " + dataDirectory);
+        loadProgressBar.setValue(0);
+        loadProgressBar.setVisible(true);
+        cancelLoadButton.setEnabled(true);
+        cancelLoadButton.setVisible(true);
+        loadMenuItem.setEnabled(false);
+        loadWorker.execute();
+    }
+
+    /**
+     * Called once a load worker's loadData call has returned, allowing the next load
+     */
+    private void loadStopped(SwingWorker<LoadReport, String> worker) {
+        if (loadWorker != worker) {
+            return;
+        }
+        loadWorker = null;
+        loadProgressBar.setVisible(false);
+        cancelLoadButton.setVisible(false);
+        loadMenuItem.setEnabled(true);
+        if (worker.isCancelled()) {
+            statusLabel.setText("Loading cancelled");
+        }
+    }
+
+    private void cancelLoading() {
+        if (loadWorker != null) {
+            loadWorker.cancel(true);
+        }
+    }
+
+    /**
+     * Write the changes to disk on a background thread and report the result here
+     */
+    private void saveData() {
+        saveMenuItem.setEnabled(false);
+        statusLabel.setText("Saving...");
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                return controller.saveData();
+            }
+
+            @Override
+            protected void done() {
+                saveMenuItem.setEnabled(true);
+                boolean saved;
+                try {
+                    saved = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    saved = false;
+                }
+                if (saved) {
+                    statusLabel.setText("✓ Changes saved");
+                    JOptionPane.showMessageDialog(MainView.this, "Changes saved successfully!");
+                } else {
+                    statusLabel.setText("Some changes could not be saved");
+                    JOptionPane.showMessageDialog(MainView.this, "Some changes could not be saved.",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Report a CSV file changed on disk; the panels update themselves from the change events
+     */
+    private void dataFileReloaded(ReloadResult result) {
+        statusLabel.setText("✓ Reloaded " + result);
+    }
+
+    /**
+     * Refresh the panel showing an entity type, if its tab has been opened
+     */
+    private void refreshPanel(Class<?> entityType) {
+        if (entityType == Patient.class && patientPanel != null) {
+            patientPanel.refreshData();
+        } else if (entityType == Clinician.class && clinicianPanel != null) {
+            clinicianPanel.refreshData();
+        } else if (entityType == Facility.class && facilityPanel != null) {
+            facilityPanel.refreshData();
+        } else if (entityType == Appointment.class && appointmentPanel != null) {
+            appointmentPanel.refreshData();
+        } else if (entityType == Prescription.class && prescriptionPanel != null) {
+            prescriptionPanel.refreshData();
+        } else if (entityType == Referral.class && referralPanel != null) {
+            referralPanel.refreshData();
+        } else if (entityType == Staff.class && staffPanel != null) {
+            staffPanel.refreshData();
         }
     }
 
     public void refreshAllPanels() {
-        patientPanel.refreshData();
-        clinicianPanel.refreshData();
-        facilityPanel.refreshData();
-        appointmentPanel.refreshData();
-        prescriptionPanel.refreshData();
-        referralPanel.refreshData();
-        staffPanel.refreshData();
+        for (Class<?> entityType : TAB_ENTITIES) {
+            refreshPanel(entityType);
+        }
+    }
+
+    /**
+     * Report how long after launch the window was first painted, e.g. for a startup benchmark
+     * @param launchNanos System.nanoTime() when the application was started
+     */
+    public void measureFirstPaint(long launchNanos) {
+        this.launchNanos = launchNanos;
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (launchNanos != 0) {
+            long millis = (System.nanoTime() - launchNanos) / 1_000_000;
+            launchNanos = 0;
+            SwingUtilities.invokeLater(() -> firstPainted(millis));
+        }
+    }
+
+    private void firstPainted(long millis) {
+        if (loadWorker == null) {
+            statusLabel.setText("✓ Ready (first paint after " + millis + " ms)");
+        }
+        if (Boolean.getBoolean(STARTUP_BENCHMARK_PROPERTY)) {
+            System.out.println("Time to first paint: " + millis + " ms");
+            System.exit(0);
+        }
     }
 }
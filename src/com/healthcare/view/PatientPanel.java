@@ -4,16 +4,14 @@ import com.healthcare.controller.HealthcareController;
 import com.healthcare.model.Patient;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
 public class PatientPanel extends JPanel {
 
     private HealthcareController controller;
 
     private JTable table;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Patient> tableModel;
 
     private JTextField patientIDField, firstNameField, lastNameField, dobField, genderField;
     private JTextField nhsNumberField, emailField, phoneField, addressField, postcodeField;
@@ -23,6 +21,7 @@ public class PatientPanel extends JPanel {
     public PatientPanel(HealthcareController controller) {
         this.controller = controller;
         initUI();
+        refreshData();
     }
 
     private void initUI() {
@@ -61,11 +60,22 @@ public class PatientPanel extends JPanel {
                 "Emergency Name", "Emergency Phone", "Reg Date", "GP Surgery"
         };
 
-        tableModel = new DefaultTableModel(cols, 0) {
-            public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        tableModel = new EntityTableModel<>(Patient.class, Patient::getPatientID, cols,
+                Patient::getPatientID,
+                Patient::getFirstName,
+                Patient::getLastName,
+                Patient::getDateOfBirth,
+                Patient::getGender,
+                Patient::getNhsNumber,
+                Patient::getEmail,
+                Patient::getPhone,
+                Patient::getAddress,
+                Patient::getPostcode,
+                Patient::getEmergencyContactName,
+                Patient::getEmergencyContactPhone,
+                Patient::getRegistrationDate,
+                Patient::getGpSurgery);
+        controller.addChangeListener(tableModel);
 
         table = new JTable(tableModel);
         table.setRowHeight(28);
@@ -79,6 +89,10 @@ public class PatientPanel extends JPanel {
 
         JScrollPane tableScroll = new JScrollPane(table);
         tableScroll.setBorder(BorderFactory.createTitledBorder("Patients"));
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setOpaque(false);
+        tablePanel.add(new SearchBar<>(controller, table, tableModel, controller::getAllPatients), BorderLayout.NORTH);
+        tablePanel.add(tableScroll, BorderLayout.CENTER);
 
         // ---------- FORM ----------
         JPanel formPanel = createFormPanel();
@@ -87,7 +101,7 @@ public class PatientPanel extends JPanel {
         // ---------- SPLIT PANE (MAIN FIX) ----------
         JSplitPane splitPane = new JSplitPane(
                 JSplitPane.VERTICAL_SPLIT,
-                tableScroll,
+                tablePanel,
                 formPanel
         );
         splitPane.setResizeWeight(0.65); // table 65%, form 35%
@@ -152,24 +166,20 @@ public class PatientPanel extends JPanel {
     // ---------- CRUD ----------
     private void addPatient() {
         controller.addPatient(createPatient());
-        refreshData();
         clearForm();
     }
 
     private void updatePatient() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
-            controller.deletePatient((String) tableModel.getValueAt(row, 0));
-            controller.addPatient(createPatient());
-            refreshData();
+            controller.updatePatient((String) tableModel.getValueAt(row, 0), createPatient());
         }
     }
 
     private void deletePatient() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
             controller.deletePatient((String) tableModel.getValueAt(row, 0));
-            refreshData();
             clearForm();
         }
     }
@@ -194,7 +204,7 @@ public class PatientPanel extends JPanel {
     }
 
     private void loadSelectedPatient() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r < 0) return;
 
         patientIDField.setText(tableModel.getValueAt(r, 0).toString());
@@ -220,17 +230,7 @@ public class PatientPanel extends JPanel {
     }
 
     public void refreshData() {
-        tableModel.setRowCount(0);
-        List<Patient> list = controller.getAllPatients();
-        for (Patient p : list) {
-            tableModel.addRow(new Object[]{
-                    p.getPatientID(), p.getFirstName(), p.getLastName(),
-                    p.getDateOfBirth(), p.getGender(), p.getNhsNumber(),
-                    p.getEmail(), p.getPhone(), p.getAddress(), p.getPostcode(),
-                    p.getEmergencyContactName(), p.getEmergencyContactPhone(),
-                    p.getRegistrationDate(), p.getGpSurgery()
-            });
-        }
+        tableModel.setRows(controller.getAllPatients());
     }
 
     private void setColumnWidths() {
@@ -4,15 +4,13 @@ import com.healthcare.controller.HealthcareController;
 import com.healthcare.model.Prescription;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
 public class PrescriptionPanel extends JPanel {
 
     private HealthcareController controller;
     private JTable table;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Prescription> tableModel;
 
     private JTextField prescriptionIDField, patientIDField, clinicianIDField, appointmentIDField, medicationField;
     private JTextField dosageField, frequencyField, durationDaysField, quantityField, pharmacyField;
@@ -59,9 +57,23 @@ public class PrescriptionPanel extends JPanel {
                 "Date Prescribed", "Issue Date", "Collection Date", "Status", "Notes"
         };
 
-        tableModel = new DefaultTableModel(cols, 0) {
-            public boolean isCellEditable(int r, int c) { return false; }
-        };
+        tableModel = new EntityTableModel<>(Prescription.class, Prescription::getPrescriptionID, cols,
+                Prescription::getPrescriptionID,
+                Prescription::getPatientID,
+                Prescription::getClinicianID,
+                Prescription::getAppointmentID,
+                Prescription::getMedication,
+                Prescription::getDosage,
+                Prescription::getFrequency,
+                Prescription::getDurationDays,
+                Prescription::getQuantity,
+                Prescription::getPharmacy,
+                Prescription::getDatePrescribed,
+                Prescription::getIssueDate,
+                Prescription::getCollectionDate,
+                Prescription::getCollectionStatus,
+                Prescription::getNotes);
+        controller.addChangeListener(tableModel);
 
         table = new JTable(tableModel);
         table.setRowHeight(28);
@@ -75,6 +87,10 @@ public class PrescriptionPanel extends JPanel {
 
         JScrollPane tableScroll = new JScrollPane(table);
         tableScroll.setBorder(BorderFactory.createTitledBorder("Prescriptions"));
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setOpaque(false);
+        tablePanel.add(new SearchBar<>(controller, table, tableModel, controller::getAllPrescriptions), BorderLayout.NORTH);
+        tablePanel.add(tableScroll, BorderLayout.CENTER);
 
         // ================= FORM =================
         JPanel formPanel = createFormPanel();
@@ -83,7 +99,7 @@ public class PrescriptionPanel extends JPanel {
         // ================= SPLIT PANE (🔥 MAIN FIX) =================
         JSplitPane splitPane = new JSplitPane(
                 JSplitPane.VERTICAL_SPLIT,
-                tableScroll,
+                tablePanel,
                 formPanel
         );
         splitPane.setResizeWeight(0.65); // 65% table, 35% form
@@ -148,24 +164,20 @@ public class PrescriptionPanel extends JPanel {
     // ================= CRUD =================
     private void addPrescription() {
         controller.addPrescription(createFromForm());
-        refreshData();
         clearForm();
     }
 
     private void updatePrescription() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r >= 0) {
-            controller.deletePrescription(tableModel.getValueAt(r, 0).toString());
-            controller.addPrescription(createFromForm());
-            refreshData();
+            controller.updatePrescription(tableModel.getValueAt(r, 0).toString(), createFromForm());
         }
     }
 
     private void deletePrescription() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r >= 0) {
             controller.deletePrescription(tableModel.getValueAt(r, 0).toString());
-            refreshData();
             clearForm();
         }
     }
@@ -184,7 +196,7 @@ public class PrescriptionPanel extends JPanel {
     }
 
     private void loadSelectedPrescription() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r < 0) return;
 
         prescriptionIDField.setText(tableModel.getValueAt(r,0).toString());
@@ -214,16 +226,7 @@ public class PrescriptionPanel extends JPanel {
     }
 
     public void refreshData() {
-        tableModel.setRowCount(0);
-        for (Prescription p : controller.getAllPrescriptions()) {
-            tableModel.addRow(new Object[]{
-                    p.getPrescriptionID(), p.getPatientID(), p.getClinicianID(),
-                    p.getAppointmentID(), p.getMedication(), p.getDosage(),
-                    p.getFrequency(), p.getDurationDays(), p.getQuantity(),
-                    p.getPharmacy(), p.getDatePrescribed(), p.getIssueDate(),
-                    p.getCollectionDate(), p.getCollectionStatus(), p.getNotes()
-            });
-        }
+        tableModel.setRows(controller.getAllPrescriptions());
         setColumnWidths();
     }
 
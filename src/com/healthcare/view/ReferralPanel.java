@@ -5,23 +5,24 @@ import com.healthcare.model.Referral;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 public class ReferralPanel extends JPanel {
 
     private HealthcareController controller;
     private JTable table;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Referral> tableModel;
 
     private JTextField referralIDField, patientIDField, referringClinicianIDField, receivingClinicianIDField;
     private JTextField referringFacilityField, receivingFacilityField, dateField, urgencyField;
     private JTextField referralReasonField, clinicalSummaryField, investigationsField;
     private JTextField appointmentIDField, notesField, statusField, createdDateField, lastUpdatedField;
 
-    private JButton addButton, updateButton, deleteButton, generateFileButton;
+    private JButton addButton, updateButton, deleteButton, generateFileButton, generateShownButton;
 
     public ReferralPanel(HealthcareController controller) {
         this.controller = controller;
@@ -39,9 +40,24 @@ public class ReferralPanel extends JPanel {
                 "Referring Facility", "Receiving Facility", "Date", "Urgency", "Referral Reason",
                 "Clinical Summary", "Investigations", "Appointment ID", "Notes", "Status", "Created", "Last Updated"};
 
-        tableModel = new DefaultTableModel(columns, 0) {
-            public boolean isCellEditable(int r, int c) { return false; }
-        };
+        tableModel = new EntityTableModel<>(Referral.class, Referral::getReferralID, columns,
+                Referral::getReferralID,
+                Referral::getPatientID,
+                Referral::getReferringClinicianID,
+                Referral::getReceivingClinicianID,
+                Referral::getReferringFacility,
+                Referral::getReceivingFacility,
+                Referral::getDate,
+                Referral::getUrgency,
+                Referral::getReferralReason,
+                Referral::getClinicalSummary,
+                Referral::getRequestedInvestigations,
+                Referral::getAppointmentID,
+                Referral::getNotes,
+                Referral::getStatus,
+                Referral::getCreatedDate,
+                Referral::getLastUpdated);
+        controller.addChangeListener(tableModel);
         table = new JTable(tableModel);
         table.setRowHeight(35);
         table.setSelectionBackground(new Color(227, 242, 253));
@@ -56,6 +72,10 @@ public class ReferralPanel extends JPanel {
             table.getColumnModel().getColumn(i).setPreferredWidth(widths[i]);
 
         JScrollPane tableScroll = new JScrollPane(table);
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setOpaque(false);
+        tablePanel.add(new SearchBar<>(controller, table, tableModel, controller::getAllReferrals), BorderLayout.NORTH);
+        tablePanel.add(tableScroll, BorderLayout.CENTER);
 
         // ===== Form =====
         JPanel formPanel = new JPanel(new GridLayout(5, 4, 8, 8));
@@ -90,23 +110,27 @@ public class ReferralPanel extends JPanel {
         updateButton = new JButton("Update");
         deleteButton = new JButton("Delete");
         generateFileButton = new JButton("Generate File");
+        generateShownButton = new JButton("Generate Shown");
+        generateShownButton.setToolTipText("Generate files for the selected referrals, or all referrals shown");
 
         addButton.addActionListener(e -> addReferral());
         updateButton.addActionListener(e -> updateReferral());
         deleteButton.addActionListener(e -> deleteReferral());
         generateFileButton.addActionListener(e -> generateReferralFile());
+        generateShownButton.addActionListener(e -> generateShownReferralFiles());
 
         buttonPanel.add(addButton);
         buttonPanel.add(updateButton);
         buttonPanel.add(deleteButton);
         buttonPanel.add(generateFileButton);
+        buttonPanel.add(generateShownButton);
 
         JPanel formContainer = new JPanel(new BorderLayout());
         formContainer.add(formPanel, BorderLayout.CENTER);
         formContainer.add(buttonPanel, BorderLayout.SOUTH);
 
         // ===== Split Pane =====
-        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tableScroll, formContainer);
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tablePanel, formContainer);
         splitPane.setResizeWeight(0.5); // Table takes half screen
         splitPane.setDividerSize(5);
         splitPane.setOneTouchExpandable(true);
@@ -146,41 +170,89 @@ public class ReferralPanel extends JPanel {
     private void addReferral() {
         Referral r = createReferralFromForm();
         if (r != null) {
-            controller.addReferral(r);
-            refreshData();
+            controller.addReferral(r).whenComplete((done, e) -> {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Error processing referral " + r.getReferralID() + ": " + cause.getMessage(), "Error",
+                            JOptionPane.ERROR_MESSAGE));
+                }
+            });
             clearForm();
         }
     }
 
     private void updateReferral() {
-        int row = table.getSelectedRow();
-        if (row >= 0) {
-            controller.deleteReferral((String) tableModel.getValueAt(row, 0));
-            controller.addReferral(createReferralFromForm());
-            refreshData();
+        int row = EntityTableModel.selectedRow(table);
+        Referral r = createReferralFromForm();
+        if (row >= 0 && r != null) {
+            controller.updateReferral((String) tableModel.getValueAt(row, 0), r);
             clearForm();
         }
     }
 
     private void deleteReferral() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
             controller.deleteReferral((String) tableModel.getValueAt(row, 0));
-            refreshData();
             clearForm();
         }
     }
 
     private void generateReferralFile() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row < 0) return;
         String id = (String) tableModel.getValueAt(row, 0);
-        Referral r = controller.getAllReferrals().stream().filter(ref -> ref.getReferralID().equals(id)).findFirst().orElse(null);
-        if (r != null) controller.generateReferralFile(r, "referral_" + id + ".txt");
+        Referral r = controller.findReferral(id);
+        if (r == null) return;
+        controller.generateReferralFileAsync(r, "referral_" + id + ".txt").whenComplete((done, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        "Error generating referral file: " + cause.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+
+    /**
+     * Generate files for the selected referrals, or for every row the search shows if
+     * at most one is selected, into a chosen directory
+     */
+    private void generateShownReferralFiles() {
+        List<Referral> referrals = new ArrayList<>();
+        boolean selectedOnly = table.getSelectedRowCount() > 1;
+        int[] viewRows = selectedOnly ? table.getSelectedRows() : null;
+        int count = selectedOnly ? viewRows.length : table.getRowCount();
+        for (int i = 0; i < count; i++) {
+            referrals.add(tableModel.getRow(table.convertRowIndexToModel(selectedOnly ? viewRows[i] : i)));
+        }
+        if (referrals.isEmpty()) return;
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setDialogTitle("Generate " + referrals.size() + " referral files into");
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        generateShownButton.setEnabled(false);
+        controller.generateReferralFiles(referrals, chooser.getSelectedFile().getPath())
+                .whenComplete((report, e) -> SwingUtilities.invokeLater(() -> {
+                    generateShownButton.setEnabled(true);
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        JOptionPane.showMessageDialog(this, "Error generating referral files: " + cause.getMessage(),
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                    } else if (report.getErrors().isEmpty()) {
+                        JOptionPane.showMessageDialog(this, report.toString());
+                    } else {
+                        JOptionPane.showMessageDialog(this, report + "\n" + report.getErrors().get(0),
+                                "Error", JOptionPane.WARNING_MESSAGE);
+                    }
+                }));
     }
 
     private void loadSelectedReferral() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         if (r >= 0) {
             referralIDField.setText((String) tableModel.getValueAt(r, 0));
             patientIDField.setText((String) tableModel.getValueAt(r, 1));
@@ -211,15 +283,6 @@ public class ReferralPanel extends JPanel {
     }
 
     public void refreshData() {
-        tableModel.setRowCount(0);
-        List<Referral> list = controller.getAllReferrals();
-        for (Referral r : list) {
-            tableModel.addRow(new Object[]{
-                    r.getReferralID(), r.getPatientID(), r.getReferringClinicianID(), r.getReceivingClinicianID(),
-                    r.getReferringFacility(), r.getReceivingFacility(), r.getDate(), r.getUrgency(),
-                    r.getReferralReason(), r.getClinicalSummary(), r.getRequestedInvestigations(),
-                    r.getAppointmentID(), r.getNotes(), r.getStatus(), r.getCreatedDate(), r.getLastUpdated()
-            });
-        }
+        tableModel.setRows(controller.getAllReferrals());
     }
 }
@@ -0,0 +1,151 @@
+package com.healthcare.view;
+
+import com.healthcare.controller.HealthcareController;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Search field that filters a table of entities as the user types.
+ *
+ * Input is debounced, then looked up in the data layer's prefix index of IDs and
+ * names. Only while the index is still being built is every column of every row
+ * scanned for the text on a background thread instead. Either way the table
+ * is filtered through its row sorter, which hides non-matching rows without copying
+ * the model.
+ */
+class SearchBar<T> extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    // Quiet time after the last keystroke before searching
+    private static final int DEBOUNCE_MILLIS = 250;
+
+    private final HealthcareController controller;
+    private final EntityTableModel<T> model;
+    private final Supplier<List<T>> allRows;
+    private final TableRowSorter<EntityTableModel<T>> sorter;
+    private final JTextField searchField = new JTextField(20);
+    private final JLabel resultLabel = new JLabel();
+    private final Timer debounce;
+    private SwingWorker<Set<String>, Void> scan;
+
+    /**
+     * @param allRows the entities to scan while the index is being built, e.g. controller::getAllPatients
+     */
+    SearchBar(HealthcareController controller, JTable table, EntityTableModel<T> model,
+              Supplier<List<T>> allRows) {
+        super(new FlowLayout(FlowLayout.LEFT, 8, 2));
+        this.controller = controller;
+        this.model = model;
+        this.allRows = allRows;
+        this.sorter = new TableRowSorter<>(model);
+        table.setRowSorter(sorter);
+
+        debounce = new Timer(DEBOUNCE_MILLIS, e -> search());
+        debounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        searchField.setToolTipText("Start of an ID or name");
+        resultLabel.setForeground(Color.DARK_GRAY);
+
+        add(new JLabel("Search:"));
+        add(searchField);
+        add(resultLabel);
+    }
+
+    private void search() {
+        if (scan != null) {
+            scan.cancel(true);
+            scan = null;
+        }
+        String text = searchField.getText().trim();
+        if (text.isEmpty()) {
+            sorter.setRowFilter(null);
+            resultLabel.setText("");
+            return;
+        }
+
+        Set<String> matches = controller.search(model.getType(), text);
+        if (matches != null) {
+            showMatches(matches);
+            return;
+        }
+
+        // The index is not built yet: scan every column on a background thread meanwhile
+        List<T> rows = allRows.get();
+        resultLabel.setText("Searching all fields...");
+        scan = new SwingWorker<>() {
+            @Override
+            protected Set<String> doInBackground() {
+                Set<String> found = new HashSet<>();
+                for (T row : rows) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    if (model.containsText(row, text)) {
+                        found.add(model.keyOf(row));
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                scan = null;
+                try {
+                    showMatches(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error searching " + text + ": " + e.getMessage());
+                }
+            }
+        };
+        scan.execute();
+    }
+
+    /**
+     * Show only the rows of these entities. Rows are looked up by key once; the filter then
+     * tests a bit per row until the model moves rows, and compares keys from then on.
+     */
+    private void showMatches(Set<String> keys) {
+        BitSet rows = model.rowsOf(keys);
+        int moves = model.getMoves();
+        int rowCount = model.getRowCount();
+        sorter.setRowFilter(new RowFilter<EntityTableModel<T>, Integer>() {
+            @Override
+            public boolean include(Entry<? extends EntityTableModel<T>, ? extends Integer> entry) {
+                int row = entry.getIdentifier();
+                if (row < rowCount && model.getMoves() == moves) {
+                    return rows.get(row);
+                }
+                return keys.contains(model.keyOf(model.getRow(row)));
+            }
+        });
+        resultLabel.setText(sorter.getViewRowCount() + " of " + model.getRowCount() + " shown");
+    }
+}
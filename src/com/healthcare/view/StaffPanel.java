@@ -5,10 +5,8 @@ import com.healthcare.model.Staff;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.util.List;
 
 public class StaffPanel extends JPanel {
 
@@ -23,7 +21,7 @@ public class StaffPanel extends JPanel {
     private HealthcareController controller;
 
     private JTable table;
-    private DefaultTableModel tableModel;
+    private EntityTableModel<Staff> tableModel;
 
     private JTextField staffIDField, firstNameField, lastNameField, roleField, departmentField;
     private JTextField facilityIDField, emailField, phoneField, employmentStatusField;
@@ -53,10 +51,20 @@ public class StaffPanel extends JPanel {
         String[] columns = {"Staff ID", "First Name", "Last Name", "Role", "Department", "Facility ID",
                 "Email", "Phone", "Employment Status", "Start Date", "Line Manager", "Access Level"};
 
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        tableModel = new EntityTableModel<>(Staff.class, Staff::getStaffID, columns,
+                Staff::getStaffID,
+                Staff::getFirstName,
+                Staff::getLastName,
+                Staff::getRole,
+                Staff::getDepartment,
+                Staff::getFacilityID,
+                Staff::getEmail,
+                Staff::getPhone,
+                Staff::getEmploymentStatus,
+                Staff::getStartDate,
+                Staff::getLineManager,
+                Staff::getAccessLevel);
+        controller.addChangeListener(tableModel);
         table = new JTable(tableModel);
         table.setRowHeight(35);
         table.setSelectionBackground(TABLE_SELECTION);
@@ -74,6 +82,10 @@ public class StaffPanel extends JPanel {
         });
 
         JScrollPane tableScroll = new JScrollPane(table);
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setOpaque(false);
+        tablePanel.add(new SearchBar<>(controller, table, tableModel, controller::getAllStaff), BorderLayout.NORTH);
+        tablePanel.add(tableScroll, BorderLayout.CENTER);
 
         // ===== Form =====
         JPanel formPanel = new JPanel(new BorderLayout());
@@ -120,7 +132,7 @@ public class StaffPanel extends JPanel {
         formPanel.add(buttonPanel, BorderLayout.SOUTH);
 
         // ===== Split Pane =====
-        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tableScroll, formPanel);
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tablePanel, formPanel);
         split.setResizeWeight(0.5); // table ~50%, form ~50%
         split.setDividerSize(5);
         split.setOneTouchExpandable(true);
@@ -152,31 +164,27 @@ public class StaffPanel extends JPanel {
     private void addStaff() {
         Staff s = createStaffFromForm();
         controller.addStaff(s);
-        refreshData();
         clearForm();
     }
 
     private void updateStaff() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
-            controller.deleteStaff((String) tableModel.getValueAt(row, 0));
-            controller.addStaff(createStaffFromForm());
-            refreshData();
+            controller.updateStaff((String) tableModel.getValueAt(row, 0), createStaffFromForm());
             clearForm();
         }
     }
 
     private void deleteStaff() {
-        int row = table.getSelectedRow();
+        int row = EntityTableModel.selectedRow(table);
         if (row >= 0) {
             controller.deleteStaff((String) tableModel.getValueAt(row, 0));
-            refreshData();
             clearForm();
         }
     }
 
     private void loadSelectedStaff() {
-        int r = table.getSelectedRow();
+        int r = EntityTableModel.selectedRow(table);
         staffIDField.setText((String) tableModel.getValueAt(r, 0));
         firstNameField.setText((String) tableModel.getValueAt(r, 1));
         lastNameField.setText((String) tableModel.getValueAt(r, 2));
@@ -200,15 +208,6 @@ public class StaffPanel extends JPanel {
     }
 
     public void refreshData() {
-        tableModel.setRowCount(0);
-        List<Staff> list = controller.getAllStaff();
-        for (Staff s : list) {
-            tableModel.addRow(new Object[]{
-                    s.getStaffID(), s.getFirstName(), s.getLastName(),
-                    s.getRole(), s.getDepartment(), s.getFacilityID(),
-                    s.getEmail(), s.getPhone(), s.getEmploymentStatus(),
-                    s.getStartDate(), s.getLineManager(), s.getAccessLevel()
-            });
-        }
+        tableModel.setRows(controller.getAllStaff());
     }
 }